@@ -1,12 +1,13 @@
 package controllers;
 
-import controllers.menus.EntityMenuController;
 import entities.Event;
 import utility.UserType;
 import presenter.InputParser;
 import presenter.Presenter;
 import usecases.EventManager;
+import usecases.EventStatistics;
 import usecases.MenuManager;
+import usecases.MessageBoxManager;
 import usecases.TemplateManager;
 import usecases.UserManager;
 import utility.*;
@@ -25,9 +26,10 @@ public class EventController {
     private final UserManager userManager;
     private final EventManager eventManager;
     private final TemplateManager templateManager;
+    private final MessageBoxManager messageBoxManager;
     private final Presenter presenter;
     private final InputParser inputParser;
-    private final EntityMenuController<Event> menuController;
+    private final EventMenuController menuController;
     private final TemplateController templateController;
 
     /**
@@ -36,13 +38,16 @@ public class EventController {
      * @param eventManager An event manager.
      * @param templateManager A template manager.
      * @param menuManager A event menu manager.
+     * @param messageBoxManager A message box manager.
      * @param templateController A template controller.
      */
     public EventController(UserManager userManager, EventManager eventManager, TemplateManager templateManager,
-                           MenuManager menuManager, TemplateController templateController) {
+                           MenuManager menuManager, MessageBoxManager messageBoxManager,
+                           TemplateController templateController) {
         this.userManager = userManager;
         this.eventManager = eventManager;
         this.templateManager = templateManager;
+        this.messageBoxManager = messageBoxManager;
         this.presenter = Presenter.getInstance();
         this.inputParser = InputParser.getInstance();
         this.menuController = new EventMenuController(menuManager, userManager, eventManager);
@@ -76,10 +81,61 @@ public class EventController {
         }
     }
 
+    /**
+     * Prompts user for a search query, displays the matching Events to user & prompts user for choice.
+     * Finally, calls browseEvent on selected Event.
+     *
+     * @param userType The userType of the current user.
+     * @param username The username of the current user
+     */
+    public void searchEvents(UserType userType, String username) {
+        presenter.printText("Enter the words to search for:");
+        String query = inputParser.readLine();
+        while (true) {
+            try {
+                String eventID = menuController.getSearchResultChoice(query, username);
+                viewEvent(userType, username, eventID);
+            } catch (ExitException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Prints the counts & totals over all events, e.g. the number of events of each type & how full the events are.
+     */
+    public void viewStatistics() {
+        EventStatistics statistics = eventManager.getStatistics();
+        Map<String, String> summary = new LinkedHashMap<>();
+        summary.put("Events", Integer.toString(statistics.getEventCount()));
+        summary.put("Suspended Events", Integer.toString(statistics.getSuspendedCount()));
+        summary.put("Total Attendance", Long.toString(statistics.getTotalAttendance()));
+        summary.put("Average Attendance", String.format("%.2f", statistics.getAverageAttendance()));
+        summary.put("Fill Rate", statistics.getLimitedEventCount() == 0 ? "N/A" :
+                String.format("%.1f%% of %d events with a maximum", statistics.getFillRate() * 100,
+                        statistics.getLimitedEventCount()));
+        presenter.printEntity(summary);
+
+        Map<String, String> privacyCounts = new LinkedHashMap<>();
+        for (Map.Entry<EventPrivacyType, Integer> entry: statistics.getEventCountsByPrivacyType().entrySet())
+            privacyCounts.put(entry.getKey().getName(), entry.getValue().toString());
+        presenter.printText("Events by privacy type:");
+        presenter.printEntity(privacyCounts);
+
+        Map<String, String> typeCounts = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry: statistics.getEventCountsByType().entrySet())
+            typeCounts.put(entry.getKey(), entry.getValue().toString());
+        presenter.printText("Events by type:");
+        presenter.printEntity(typeCounts);
+    }
+
     private void viewEvent(UserType userType, String username, String eventID) {
         boolean fullData = (userType == ADMIN) || userManager.getCreatedEvents(username).contains(eventID);
         viewEventMetaDetails(eventID, fullData);
         viewEventDetails(eventID);
+        int waitlistPosition = eventManager.getWaitlistPosition(eventID, username);
+        if (waitlistPosition > 0)
+            presenter.printText("You are number " + waitlistPosition + " on the waitlist for this event.");
         while (true) {
             Command userInput = menuController.getEntityMenuChoice(userType, username, BROWSE_EVENTS, eventID);
             try {
@@ -98,6 +154,12 @@ public class EventController {
             case UNATTEND_EVENT:
                 unattendEvent(username, eventId);
                 return;
+            case LEAVE_WAITLIST:
+                leaveWaitlist(username, eventId);
+                return;
+            case VIEW_ATTENDEES:
+                viewAttendees(eventId);
+                return;
             case CHANGE_EVENT_PRIVACY:
                 changeEventPrivacy(eventId);
                 return;
@@ -126,6 +188,22 @@ public class EventController {
         this.presenter.printEntity(eventManager.returnEventDetails(eventID));
     }
 
+    /**
+     * Prints the usernames of the users attending a single event.
+     *
+     * @param eventID ID of the event
+     */
+    private void viewAttendees(String eventID) {
+        List<String> attendees = userManager.getAttendees(eventID);
+        if (attendees.isEmpty()) {
+            presenter.printText("Nobody is attending this event yet.");
+            return;
+        }
+        presenter.printText(attendees.size() + " attending:");
+        for (String attendee: attendees)
+            presenter.printText(attendee);
+    }
+
     /**
      * Prints the "metadata" of a single event.
      *
@@ -239,6 +317,8 @@ public class EventController {
                 Object value = readFieldValue(eventID, userInput, eventMap.get(userInput).getFirst().getSimpleName(),
                         eventMap.get(userInput).getSecond());
                 eventManager.enterFieldValue(eventID, userInput, value);
+                // Raising the maximum number of attendees gives the new places to the users on the waitlist.
+                promoteWaitlist(eventID);
             } catch (ExitException e) {
                 presenter.printText(EXITING_TEXT);
                 return;
@@ -282,11 +362,87 @@ public class EventController {
      */
     private void attendEvent(String username, String eventID) {
         boolean result = eventManager.attendEvent(eventID);
-        if (result) {
-            userManager.attendEvent(username, eventID);
+        if (!result) {
+            presenter.printText("Sorry this event is full, or other users are waiting for a place. Would you like to " +
+                    "join the waitlist? (Y/N)");
+            if (inputParser.readBoolean())
+                joinWaitlist(username, eventID);
+        } else if (userManager.attendEvent(username, eventID)) {
+            presenter.printText("You have successfully registered for the event.");
+        } else {
+            // The place taken above is given back, so the number of attendees matches the users attending.
+            releasePlace(eventID);
+            presenter.printText("You are already registered for this event.");
+        }
+    }
+
+    private void joinWaitlist(String username, String eventID) {
+        int position = eventManager.joinWaitlist(eventID, username);
+        if (position > 0) {
+            presenter.printText("You are number " + position + " on the waitlist. You will get a message once a " +
+                    "place opens up.");
+        } else if (position == 0 && userManager.attendEvent(username, eventID)) {
+            // A place opened up since the event was found to be full.
             presenter.printText("You have successfully registered for the event.");
         } else {
-            presenter.printText("Sorry this event is full.");
+            if (position == 0)
+                releasePlace(eventID);
+            presenter.printText("You could not join the waitlist.");
+        }
+    }
+
+    private void leaveWaitlist(String username, String eventID) {
+        if (eventManager.leaveWaitlist(eventID, username))
+            presenter.printText("You have left the waitlist.");
+        else
+            presenter.printText("You are not on the waitlist for this event.");
+    }
+
+    /**
+     * Gives up one place in each of the events, e.g. the places of a user whose account was deleted. Each place goes to
+     * the first user waiting for it, as when a user unregisters from an event. Events that no longer exist are skipped.
+     * @param eventIDs unique identifiers for the events
+     */
+    public void releasePlaces(List<String> eventIDs) {
+        for (String eventID: eventIDs) {
+            if (eventManager.retrieveEventById(eventID) != null)
+                releasePlace(eventID);
+        }
+    }
+
+    /**
+     * Gives up a place in the event. If users are waiting for a place, the first of them who can still attend is
+     * registered for the event & sent a message.
+     * @param eventID unique identifier for event
+     */
+    private void releasePlace(String eventID) {
+        registerPromotedUser(eventID, eventManager.unAttendEvent(eventID));
+    }
+
+    /**
+     * Gives the free places of the event to the users waiting for them, e.g. after the maximum number of attendees
+     * was raised. Each of them is registered for the event & sent a message, as when a place is given up.
+     * @param eventID unique identifier for event
+     */
+    private void promoteWaitlist(String eventID) {
+        for (String promotedUser: eventManager.promoteWaitlist(eventID))
+            registerPromotedUser(eventID, promotedUser);
+    }
+
+    /**
+     * Registers a user who got a place from the waitlist for the event & sends them a message. If the user can't be
+     * registered, their place goes to the next user waiting.
+     * @param eventID unique identifier for event
+     * @param promotedUser username of the user who got a place, or null if nobody did
+     */
+    private void registerPromotedUser(String eventID, String promotedUser) {
+        // Users who were deleted or registered in the meantime are skipped.
+        while (promotedUser != null && !userManager.attendEvent(promotedUser, eventID))
+            promotedUser = eventManager.unAttendEvent(eventID);
+        if (promotedUser != null) {
+            String eventName = eventManager.getEventName(eventID);
+            messageBoxManager.sendMail(ADMIN_USERNAME, "Off the waitlist: " + eventName, "A place opened up in " +
+                    eventName + ", and you have been registered for it.", promotedUser);
         }
     }
 
@@ -299,7 +455,7 @@ public class EventController {
     private void unattendEvent(String username, String eventID) {
         boolean result = userManager.unAttendEvent(username, eventID);
         if (result) {
-            eventManager.unAttendEvent(eventID);
+            releasePlace(eventID);
             presenter.printText("You have successfully unregistered for the event.");
         } else {
             presenter.printText("You could not leave this event.");
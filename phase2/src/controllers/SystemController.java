@@ -1,12 +1,12 @@
 package controllers;
 
 import controllers.menus.CommandMenuController;
-import entities.*;
 import gateways.*;
 import presenter.InputParser;
 import presenter.Presenter;
 import usecases.*;
 import utility.Command;
+import utility.Savable;
 import utility.UserType;
 
 import static utility.AppConstant.*;
@@ -14,11 +14,23 @@ import static utility.UserType.*;
 import static utility.Command.*;
 
 import java.io.File;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 /**
  * Controller in charge of delegating to user controller and event controller. Runs the full system.
  */
 public class SystemController {
+    // Number of json files the events & users are partitioned into. Existing data can be moved to a different number
+    // of files with gateways.ReshardTool.
+    private static final int EVENT_SHARD_COUNT = 1;
+    private static final int USER_SHARD_COUNT = 1;
+    // Whether events, users, templates & message boxes are stored in page files instead of json files. The page files
+    // are created from the json files the first time they are opened.
+    private static final boolean USE_PAGE_FILES = false;
+
     private final UserController userController;
     private final EventController eventController;
     private final TemplateController templateController;
@@ -37,30 +49,100 @@ public class SystemController {
     private UserType currentUserType;
 
     // == initializing ==
+    /**
+     * Creates the SystemController. The gateways are read & the managers are built in parallel: every manager is built
+     * on its own thread as soon as the managers it depends on are ready. The time each startup phase took is printed
+     * once every manager is ready.
+     */
     public SystemController() {
+        long startTime = System.nanoTime();
         String dataPath = "phase2" + File.separator + "data" + File.separator;
-        IGateway<User> userGateway = new UserGateway(dataPath + "users.json");
-        IGateway<Event> eventGateway = new EventGateway(dataPath + "events.json");
-        IGateway<Template> templateGateway = new TemplateGateway(dataPath + "templates.json");
-        IGateway<Menu> menuGateway = new MenuGateway(dataPath + "menus.json");
-        IGateway<Permissions> userPermissionsGateway = new PermissionsGateway(dataPath + "permissions.json");
-        IGateway<MessageBox> messageBoxGateway = new MessageBoxGateway(dataPath + "messageboxes.json");
+        Queue<String> phaseTimes = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
 
-        userManager = new UserManager(userGateway);
-        templateManager = new TemplateManager(templateGateway);
-        eventManager = new EventManager(eventGateway, templateManager);
-        menuManager = new MenuManager(menuGateway, userPermissionsGateway);
-        messageBoxManager = new MessageBoxManager(messageBoxGateway);
+        CompletableFuture<UserManager> userManagerFuture = startPhase("users", phaseTimes, executor,
+                () -> new UserManager(createGateway(
+                        new UserGateway(dataPath + "users.json", false, USER_SHARD_COUNT), dataPath + "users.db")));
+        CompletableFuture<TemplateManager> templateManagerFuture = startPhase("templates", phaseTimes, executor,
+                () -> new TemplateManager(createGateway(
+                        new TemplateGateway(dataPath + "templates.json"), dataPath + "templates.db")));
+        CompletableFuture<MenuManager> menuManagerFuture = startPhase("menus", phaseTimes, executor,
+                () -> new MenuManager(new MenuGateway(dataPath + "menus.json"),
+                        new PermissionsGateway(dataPath + "permissions.json")));
+        CompletableFuture<MessageBoxManager> messageBoxManagerFuture = startPhase("message boxes", phaseTimes,
+                executor, () -> new MessageBoxManager(createGateway(
+                        new MessageBoxGateway(dataPath + "messageboxes.json"), dataPath + "messageboxes.db")));
+        // EventManager needs the TemplateManager, so it is only built once the templates have been read.
+        CompletableFuture<EventManager> eventManagerFuture = templateManagerFuture.thenCompose(
+                templates -> startPhase("events", phaseTimes, executor, () -> new EventManager(createGateway(
+                        new EventGateway(dataPath + "events.json", true, EVENT_SHARD_COUNT),
+                        dataPath + "events.db"), templates)));
+
+        try {
+            userManager = await(userManagerFuture);
+            templateManager = await(templateManagerFuture);
+            eventManager = await(eventManagerFuture);
+            menuManager = await(menuManagerFuture);
+            messageBoxManager = await(messageBoxManagerFuture);
+        } finally {
+            executor.shutdown();
+        }
 
         presenter = Presenter.getInstance();
         inputParser = InputParser.getInstance();
 
         messageBoxController = new MessageController(userManager, messageBoxManager);
         templateController = new TemplateController(templateManager);
-        eventController = new EventController(userManager, eventManager, templateManager, menuManager, templateController);
+        eventController = new EventController(userManager, eventManager, templateManager, menuManager,
+                messageBoxManager, templateController);
         userController = new UserController(userManager, eventManager, menuManager, messageBoxManager, messageBoxController);
         menuController = new CommandMenuController(menuManager);
 
+        presenter.printText("Started in " + (System.nanoTime() - startTime) / 1000000 + " ms (" +
+                String.join(", ", phaseTimes) + ")");
+    }
+
+    /**
+     * Runs a startup phase on the executor & records how long it took.
+     * @param name Name of the phase, used when the phase times are printed.
+     * @param phaseTimes Queue that the time of the phase is added to once it is done.
+     * @param executor Executor that runs the phase.
+     * @param phase Supplier that runs the phase & returns what it built.
+     * @param <T> Type of what the phase builds.
+     * @return Future of what the phase builds.
+     */
+    private static <T> CompletableFuture<T> startPhase(String name, Queue<String> phaseTimes, Executor executor,
+                                                       Supplier<T> phase) {
+        return CompletableFuture.supplyAsync(() -> {
+            long startTime = System.nanoTime();
+            T result = phase.get();
+            phaseTimes.add(name + " " + (System.nanoTime() - startTime) / 1000000 + " ms");
+            return result;
+        }, executor);
+    }
+
+    /**
+     * Waits for a startup phase to finish. If the phase failed, its exception is rethrown on the calling thread.
+     * @param future Future of what the phase builds.
+     * @param <T> Type of what the phase builds.
+     * @return What the phase built.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    private static <T extends Savable> IGateway<T> createGateway(EntityGateway<T> jsonGateway, String pageFilePath) {
+        if (USE_PAGE_FILES)
+            return new PagedGateway<>(jsonGateway, pageFilePath);
+        return jsonGateway;
     }
 
     /**
@@ -106,6 +188,9 @@ public class SystemController {
             case BROWSE_EVENTS:
                 eventController.browseEvents(currentUserType, currentUser);
                 break;
+            case SEARCH_EVENTS:
+                eventController.searchEvents(currentUserType, currentUser);
+                break;
             case CREATE_TEMPLATE:
                 templateController.createNewTemplate();
                 break;
@@ -115,6 +200,9 @@ public class SystemController {
             case EDIT_TEMPLATE:
                 runMenu(EDIT_TEMPLATE);
                 break;
+            case EVENT_STATISTICS:
+                eventController.viewStatistics();
+                break;
             case CHANGE_TEMPLATE_NAME:
                 templateController.editTemplateName();
                 break;
@@ -242,8 +330,11 @@ public class SystemController {
     }
 
     private void deleteAccount() throws ExitException {
+        List<String> attendingEvents = userManager.getAttendingEvents(currentUser);
         boolean result = userController.deleteUser(currentUser);
         if (result) {
+            // The places the user held are given back only now, so the user can't be promoted into them again.
+            eventController.releasePlaces(attendingEvents);
             logOut();
             presenter.printText("Your account has been deleted.");
         }
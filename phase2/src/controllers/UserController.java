@@ -15,7 +15,6 @@ import utility.ViewType;
 
 import java.time.Duration;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -239,9 +238,7 @@ public class UserController {
     }
 
     private void privateUserEvents(String selectedUser) {
-        List<String> events = userManager.getCreatedEvents(selectedUser);
-        for (String eventID : events)
-            eventManager.setPrivacyType(eventID, "Private");
+        eventManager.setPrivacyType(userManager.getCreatedEvents(selectedUser), "Private");
     }
 
     private void unsuspendUser(String selectedUser) {
@@ -333,9 +330,7 @@ public class UserController {
     public boolean deleteUser(String username){
         if (!verifyDeletion(username))
             return false;
-        List<String> userEvents = userManager.getCreatedEvents(username);
-        for (String eventId : userEvents)
-            eventManager.deleteEvent(eventId);
+        eventManager.deleteEvents(userManager.getCreatedEvents(username));
         userManager.deleteUser(username);
         return true;
     }
@@ -2,23 +2,34 @@ package controllers.menus;
 
 import controllers.ExitException;
 import utility.*;
+import usecases.EntityPage;
 import usecases.EventManager;
 import usecases.MenuManager;
 import usecases.UserManager;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
-import static utility.AppConstant.MENU_EXIT_OPTION;
+import static utility.AppConstant.*;
 
 /**
  * MenuController that handles tasks related to menus that have to do with entity lists.
  * @param <T> Entity type.
  */
 public abstract class EntityMenuController <T extends Viewable> extends MenuController {
+    private static final int PAGE_SIZE = 20;
+
     protected final UserManager userManager;
     protected final EventManager eventManager;
 
+    // The entity list being browsed & the page of it being shown, so that the user returns to the same page after
+    // viewing an entity.
+    private String listTitle;
+    private EntityPage.Cursor pageCursor;
+    private final List<EntityPage.Cursor> previousPageCursors = new ArrayList<>();
+
     /**
      * Constructs an EntityMenuController.
      * @param menuManager A menuManager.
@@ -71,28 +82,92 @@ public abstract class EntityMenuController <T extends Viewable> extends MenuCont
     // == Getting Entity Choice ==
 
     /**
-     * Displays the appropriate entity list to the user, gets user choice & returns it.
+     * Displays the appropriate entity list to the user one page at a time, gets user choice & returns it.
      * @param viewType The viewType chosen by the user.
      * @param username Username of current user.
      * @return Entity choice of user (the string id).
      * @throws ExitException If user chooses exit option instead of a command.
      */
     public String getEntityChoice(ViewType<T> viewType, String username) throws ExitException {
-        List<String> entities = getEntityList(viewType, username);
-        List<String> printables = getPrintableList(entities);
-        entities.add(MENU_EXIT_OPTION);
-        printables.add(MENU_EXIT_OPTION);
-        presenter.printMenu(viewType.getName(), printables);
-        return inputParser.getMenuChoice(entities, true);
+        return getEntityChoice(viewType.getName(), cursor -> getEntityPage(viewType, username, cursor, PAGE_SIZE));
+    }
+
+    /**
+     * Displays the given entity list to the user one page at a time, gets user choice & returns it.
+     * @param title Title to be shown above the list.
+     * @param entities Ids of the entities that may be listed.
+     * @param filter Condition that the listed entities have to pass. Only checked for the entities up to the end of
+     *               the page being shown.
+     * @return Entity choice of user (the string id).
+     * @throws ExitException If user chooses exit option instead of a command.
+     */
+    protected String getEntityChoice(String title, List<String> entities, Predicate<String> filter)
+            throws ExitException {
+        return getEntityChoice(title, cursor -> EntityPage.of(entities, cursor, PAGE_SIZE, filter));
+    }
+
+    /**
+     * Displays pages of an entity list until the user chooses an entity. The list continues at the page that was last
+     * shown if the previous call showed the same list & ended with an entity being chosen. If the entities of that page
+     * have all been removed since, e.g. deleted or suspended while an entity was being viewed, the list starts over at
+     * the first page.
+     * @param title Title to be shown above the list.
+     * @param pages Function that returns the page of the list starting at a cursor.
+     * @return Entity choice of user (the string id).
+     * @throws ExitException If user chooses exit option instead of a command.
+     */
+    private String getEntityChoice(String title, Function<EntityPage.Cursor, EntityPage> pages) throws ExitException {
+        if (!title.equals(listTitle)) {
+            listTitle = title;
+            pageCursor = null;
+            previousPageCursors.clear();
+        }
+
+        while (true) {
+            EntityPage page = pages.apply(pageCursor);
+            if (page.getIds().isEmpty() && pageCursor != null) {
+                pageCursor = null;
+                previousPageCursors.clear();
+                continue;
+            }
+            List<String> options = new ArrayList<>(page.getIds());
+            List<String> printables = getPrintableList(page.getIds());
+            if (!previousPageCursors.isEmpty())
+                options.add(PREVIOUS_PAGE_OPTION);
+            if (page.hasNext())
+                options.add(NEXT_PAGE_OPTION);
+            options.add(MENU_EXIT_OPTION);
+            printables.addAll(options.subList(page.getIds().size(), options.size()));
+            presenter.printMenu(title + " (Page " + (previousPageCursors.size() + 1) + ")", printables);
+
+            int choiceIndex;
+            try {
+                choiceIndex = inputParser.getMenuChoiceIndex(options, true);
+            } catch (ExitException e) {
+                listTitle = null;
+                throw e;
+            }
+            if (choiceIndex < page.getIds().size())
+                return options.get(choiceIndex);
+            if (options.get(choiceIndex).equals(NEXT_PAGE_OPTION)) {
+                previousPageCursors.add(page.getCursor());
+                pageCursor = page.getNextCursor();
+            } else {
+                pageCursor = previousPageCursors.remove(previousPageCursors.size() - 1);
+            }
+        }
     }
 
     /**
-     * @param viewType ViewType chosen by user, the list for which should be chosen.
+     * @param viewType ViewType chosen by user, the list for which should be paged.
      * @param username Username of current user.
-     * @return Entity list that should be shown to this specific user. This is based on user type, and the specific
-     *         user information.
+     * @param cursor Cursor of the page, or null for the first page.
+     * @param pageSize Maximum number of entities on the page.
+     * @return Page of the entity list that should be shown to this specific user. This is based on user type, and the
+     *         specific user information.
      */
-    protected abstract List<String> getEntityList(ViewType<T> viewType, String username);
+    protected abstract EntityPage getEntityPage(ViewType<T> viewType, String username, EntityPage.Cursor cursor,
+                                                int pageSize);
 
     /**
      * Returns printable names of options (readable by user), corresponding to the ids.
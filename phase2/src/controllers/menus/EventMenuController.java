@@ -1,13 +1,18 @@
 package controllers.menus;
 
+import controllers.ExitException;
 import entities.Event;
 import utility.*;
+import usecases.EntityPage;
 import usecases.EventManager;
 import usecases.MenuManager;
 import usecases.UserManager;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import static utility.AppConstant.MENU_EXIT_OPTION;
 
@@ -35,50 +40,60 @@ public class EventMenuController extends EntityMenuController<Event> {
         return "Event List";
     }
 
+    /**
+     * Pages are taken from the indexes of EventManager, so only the events up to the end of the page are checked for
+     * access & suspension, instead of the whole list.
+     */
     @Override
-    protected List<String> getEntityList(ViewType<Event> viewType, String username) {
+    protected EntityPage getEntityPage(ViewType<Event> viewType, String username, EntityPage.Cursor cursor,
+                                       int pageSize) {
         assert viewType instanceof EventViewType;
         EventViewType eventViewType = (EventViewType) viewType;
 
-        List<String> eventList;
-        boolean suspensionCheck = true, accessibilityCheck = true;
+        // 'All' & 'Suspended' should list all events regardless of privacy. We want owner to see their suspended
+        // events, & we don't want suspended events to be removed from 'Suspended'.
+        boolean accessibilityCheck = eventViewType != EventViewType.ALL && eventViewType != EventViewType.SUSPENDED;
+        boolean suspensionCheck = eventViewType != EventViewType.OWNED && eventViewType != EventViewType.SUSPENDED;
+        Predicate<String> shown = eventID -> isShown(eventID, username, accessibilityCheck, suspensionCheck);
         switch (eventViewType) {
             case OWNED:
-                eventList = userManager.getCreatedEvents(username);
-                suspensionCheck = false; // We want owner to see their suspended events.
-                break;
+                return eventManager.getEventsPage(userManager.getCreatedEvents(username), cursor, pageSize, shown);
             case ATTENDING:
-                eventList = userManager.getAttendingEvents(username);
-                break;
+                return eventManager.getEventsPage(userManager.getAttendingEvents(username), cursor, pageSize, shown);
             case NOT_ATTENDING:
-                eventList = eventManager.getAllEvents();
-                eventList.removeAll(userManager.getAttendingEvents(username));
-                break;
+                Set<String> attending = new HashSet<>(userManager.getAttendingEvents(username));
+                return eventManager.getAllEventsPage(cursor, pageSize,
+                        eventID -> !attending.contains(eventID) && shown.test(eventID));
             case PUBLIC:
-                eventList = eventManager.getPublicEvents();
-                break;
+                return eventManager.getPublicEventsPage(cursor, pageSize, shown);
             case FRIENDS_ONLY:
-                eventList = eventManager.getFriendsOnlyEvents();
-                break;
+                return eventManager.getFriendsOnlyEventsPage(cursor, pageSize, shown);
             case ALL:
-                eventList = eventManager.getAllEvents();
-                accessibilityCheck = false; // 'All' should list all events regardless of privacy.
-                break;
+                return eventManager.getAllEventsPage(cursor, pageSize, shown);
             case SUSPENDED:
-                eventList = eventManager.getSuspendedEvents();
-                accessibilityCheck = false; // 'Suspended' should list all events regardless of privacy.
-                suspensionCheck = false; // We don't want suspended events to be removed.
-                break;
+                return eventManager.getSuspendedEventsPage(cursor, pageSize, shown);
+            case UPCOMING:
+                return eventManager.getUpcomingEventsPage(cursor, pageSize, shown);
+            case THIS_WEEK:
+                return eventManager.getEventsThisWeekPage(cursor, pageSize, shown);
+            case PAST:
+                return eventManager.getPastEventsPage(cursor, pageSize, shown);
             default:
-                eventList = new ArrayList<>();
+                return EntityPage.of(new ArrayList<>(), cursor, pageSize, shown);
         }
+    }
 
-        eventList = new ArrayList<>(eventList); // This is done so that original list isn't mutated.
-        if (accessibilityCheck)
-            eventList.removeIf(eventID -> !isAccessible(eventID, username));
-        if (suspensionCheck)
-            eventList.removeIf(eventManager::isSuspended);
-        return eventList;
+    /**
+     * Displays the events matching a search query to the user, gets user choice & returns it. Only events that the
+     * user has access to & that aren't suspended are shown.
+     * @param query Words to search for.
+     * @param username Username of current user.
+     * @return Event choice of user (the string id).
+     * @throws ExitException If user chooses exit option instead of an event.
+     */
+    public String getSearchResultChoice(String query, String username) throws ExitException {
+        return getEntityChoice("Search Results for \"" + query + "\"", eventManager.searchEvents(query),
+                eventID -> isShown(eventID, username, true, true));
     }
 
     @Override
@@ -100,14 +115,24 @@ public class EventMenuController extends EntityMenuController<Event> {
         }
     }
 
+    private boolean isShown(String eventID, String username, boolean accessibilityCheck, boolean suspensionCheck) {
+        return (!accessibilityCheck || isAccessible(eventID, username)) &&
+                (!suspensionCheck || !eventManager.isSuspended(eventID));
+    }
+
     @Override
     protected boolean verifyPermission(Command command, String username, String eventID) {
         boolean attending = userManager.getAttendingEvents(username).contains(eventID);
+        boolean waitlisted = eventManager.getWaitlistPosition(eventID, username) > 0;
         boolean owned = userManager.getCreatedEvents(username).contains(eventID);
         boolean suspended = eventManager.isSuspended(eventID);
         switch (command) {
             case ATTEND_EVENT:
-                return !attending && !suspended;
+                return !attending && !waitlisted && !suspended;
+            case LEAVE_WAITLIST:
+                return waitlisted;
+            case VIEW_ATTENDEES:
+                return owned || userManager.retrieveUserType(username) == UserType.ADMIN;
             case UNATTEND_EVENT:
                 return attending && !suspended;
             case CHANGE_EVENT_PRIVACY:
@@ -2,6 +2,7 @@ package controllers.menus;
 
 import entities.User;
 import utility.UserType;
+import usecases.EntityPage;
 import usecases.EventManager;
 import usecases.MenuManager;
 import usecases.UserManager;
@@ -35,32 +36,25 @@ public class UserMenuController extends EntityMenuController<User> {
     }
 
     @Override
-    protected List<String> getEntityList(ViewType<User> viewType, String username) {
+    protected EntityPage getEntityPage(ViewType<User> viewType, String username, EntityPage.Cursor cursor,
+                                       int pageSize) {
         assert viewType instanceof UserViewType;
         UserViewType userViewType = (UserViewType) viewType;
 
-        List<String> userList;
-        boolean suspensionCheck = true;
         switch (userViewType) {
             case ALL:
-                userList = userManager.getUsernameList();
-                break;
+                return userManager.getUsersPage(cursor, pageSize,
+                        user -> !user.equals(username) && !userManager.isSuspended(user));
             case FRIENDS:
-                userList = userManager.getFriends(username);
-                break;
+                return userManager.getUsersPage(userManager.getFriends(username), cursor, pageSize,
+                        user -> !user.equals(username) && !userManager.isSuspended(user));
             case SUSPENDED:
-                userList = userManager.getSuspendedList();
-                suspensionCheck = false; // We want suspended users to be included.
-                break;
+                // We want suspended users to be included.
+                return userManager.getUsersPage(cursor, pageSize,
+                        user -> !user.equals(username) && userManager.isSuspended(user));
             default:
-                return new ArrayList<>();
+                return EntityPage.of(new ArrayList<>(), cursor, pageSize, user -> true);
         }
-
-        userList = new ArrayList<>(userList); // This is done so that original list isn't mutated.
-        userList.remove(username);
-        if (suspensionCheck)
-            userList.removeIf(userManager::isSuspended);
-        return userList;
     }
 
     @Override
@@ -3,6 +3,7 @@ package entities;
 import utility.*;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
 
 import static utility.EventPrivacyType.*;
@@ -12,6 +13,14 @@ import static utility.EventPrivacyType.*;
  */
 public class Event implements Savable, Viewable {
     // === Class Variables ===
+    /**
+     * Name of the field that holds the maximum number of attendees of an event, if its template has one.
+     */
+    public static final String MAX_ATTENDEES_FIELD = "Max Attendees";
+    // Marks a primitive slot of a field without a value.
+    private static final long NO_VALUE = Long.MIN_VALUE;
+    // Marks a primitive slot whose value is kept in spilledValues instead.
+    private static final long SPILLED = Long.MIN_VALUE + 1;
     // === Instance Variables ===
 
     private String eventId;
@@ -20,15 +29,24 @@ public class Event implements Savable, Viewable {
     private LocalDateTime createdTime;
     private LocalDateTime editTime;
     private String eventOwner;
-    // The actual map containing event details using the same field details from Template class and with the values
-    // entered by the user.
-    private Map<String, Object> eventDetails;
-    private Map<String, Pair<Class<?>, Boolean>> fieldNameAndFieldSpecs;
+    // The field specs of the template version the event was created from, shared with the other events of that version.
+    private EventSchema schema;
+    // The values entered by the user, in the slots the schema gives each field. Integers & booleans are stored as
+    // longs, & times as minutes since the epoch. A value that can't be stored that way, e.g. a time with seconds, is
+    // kept in spilledValues, which is only created when needed.
+    private long[] primitiveValues;
+    private Object[] objectValues;
+    private Object[] spilledValues;
     // the number of people who are attending the event. (We won't be having any tickets at least for Phase 1)
     private int numAttendees;
     // Will essentially be the name of the template e.g. BBQ, concert, wedding
     private String eventType;
     private boolean suspended;
+    // Usernames of the users waiting for a place in the event, in the order they will get one.
+    private Deque<String> waitlist;
+    // Number of times the event has changed since it was read or created, so views of it know when they're out of date.
+    // It isn't saved.
+    private volatile long version;
 
     // === Constructors ===
 
@@ -43,11 +61,47 @@ public class Event implements Savable, Viewable {
         privacyType = PRIVATE;
         createdTime = LocalDateTime.now();
         editTime = createdTime;
-        this.eventDetails = new HashMap<>();
-        this.fieldNameAndFieldSpecs = new HashMap<>();
+        this.schema = EventSchema.of(template);
+        clearFieldValues();
         this.eventName = eventName;
         this.eventOwner = eventOwner;
         this.eventType = template.getTemplateName();
+        this.waitlist = new ArrayDeque<>();
+    }
+
+    /**
+     * Initializes an event with all of its attributes. Used when reading saved events, so that no reflection is needed.
+     * @param eventId the id of the event
+     * @param eventName the name of the event
+     * @param eventOwner the creator of the event
+     * @param eventType the name of the template used to create the event
+     * @param numAttendees the number of people attending the event
+     * @param suspended whether the event is suspended
+     * @param privacyType the privacy type of the event
+     * @param createdTime the time the event was created
+     * @param editTime the time the event was last edited
+     * @param eventDetails the values of the event's fields
+     * @param schema the data type & whether it's required for each of the event's fields
+     * @param waitlist the usernames of the users waiting for a place in the event, in order
+     */
+    public Event(String eventId, String eventName, String eventOwner, String eventType, int numAttendees,
+                 boolean suspended, EventPrivacyType privacyType, LocalDateTime createdTime, LocalDateTime editTime,
+                 Map<String, Object> eventDetails, EventSchema schema,
+                 List<String> waitlist) {
+        this.eventId = eventId;
+        this.eventName = eventName;
+        this.eventOwner = eventOwner;
+        this.eventType = eventType;
+        this.numAttendees = numAttendees;
+        this.suspended = suspended;
+        this.privacyType = privacyType;
+        this.createdTime = createdTime;
+        this.editTime = editTime;
+        this.schema = schema;
+        clearFieldValues();
+        for (Map.Entry<String, Object> entry: eventDetails.entrySet())
+            setFieldValue(entry.getKey(), entry.getValue());
+        this.waitlist = new ArrayDeque<>(waitlist);
     }
 
     // Empty constructor
@@ -56,26 +110,85 @@ public class Event implements Savable, Viewable {
 
     // === Methods ===
 
+    private void clearFieldValues() {
+        primitiveValues = new long[schema.getPrimitiveCount()];
+        Arrays.fill(primitiveValues, NO_VALUE);
+        objectValues = new Object[schema.getObjectCount()];
+        spilledValues = null;
+    }
+
     /**
-     * Adds fieldName and sets the values for each fieldName null for this event's eventDetails map.
-     * @param template the template used to create the event
+     * Gets the value of one of this event's fields
+     * @param fieldName the name of the field
+     * @return Object the value of the field, or null if it has no value or the event has no such field
      */
-    public void addFieldsToEventDetails(Template template) {
-        for (FieldSpecs fieldSpecs: template.getFieldDescriptions()){
-            this.eventDetails.put(fieldSpecs.getFieldName(), null);
-        }
+    public Object getFieldValue(String fieldName) {
+        int position = schema.getPosition(fieldName);
+        return position < 0 ? null : getFieldValue(position);
     }
 
     /**
-     * Adds field name and field spec info to the event's fieldNameAndFieldSpecs map.
-     * @param template the template used to create the event
+     * Gets the value of one of this event's fields
+     * @param position the position of the field in the event's schema
+     * @return Object the value of the field, or null if it has no value
      */
-    public void addFieldNameAndFieldSpecsInfo(Template template) { //creates a map that has fieldName as key,
-        // [fieldType, required] as value
-        for (FieldSpecs fieldSpecs: template.getFieldDescriptions()){
-            Pair<Class<?>, Boolean> typeAndRequired = new Pair<>(fieldSpecs.getDataType(), fieldSpecs.isRequired());
-            this.fieldNameAndFieldSpecs.put(fieldSpecs.getFieldName(), typeAndRequired);
+    public Object getFieldValue(int position) {
+        int slot = schema.getSlot(position);
+        if (!schema.isPrimitive(position))
+            return objectValues[slot];
+
+        long value = primitiveValues[slot];
+        if (value == NO_VALUE)
+            return null;
+        if (value == SPILLED)
+            return spilledValues[slot];
+        Class<?> dataType = schema.getDataType(position);
+        if (dataType == Integer.class)
+            return (int) value;
+        if (dataType == Boolean.class)
+            return value != 0;
+        return LocalDateTime.ofEpochSecond(value * 60, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Sets the value of one of this event's fields
+     * @param fieldName the name of the field
+     * @param value the new value of the field, or null to remove its value
+     * @return Object the previous value of the field
+     * @throws IllegalArgumentException if the event has no such field
+     */
+    public Object setFieldValue(String fieldName, Object value) {
+        int position = schema.getPosition(fieldName);
+        if (position < 0)
+            throw new IllegalArgumentException("Event " + eventId + " has no field " + fieldName);
+        Object oldValue = getFieldValue(position);
+        int slot = schema.getSlot(position);
+        if (!schema.isPrimitive(position)) {
+            objectValues[slot] = value;
+            return oldValue;
         }
+
+        long packedValue = SPILLED;
+        if (value == null) {
+            packedValue = NO_VALUE;
+        } else if (value instanceof Integer && schema.getDataType(position) == Integer.class) {
+            packedValue = (Integer) value;
+        } else if (value instanceof Boolean && schema.getDataType(position) == Boolean.class) {
+            packedValue = (Boolean) value ? 1 : 0;
+        } else if (value instanceof LocalDateTime && schema.getDataType(position) == LocalDateTime.class) {
+            LocalDateTime time = (LocalDateTime) value;
+            if (time.getSecond() == 0 && time.getNano() == 0)
+                packedValue = time.toEpochSecond(ZoneOffset.UTC) / 60;
+        }
+        if (packedValue == SPILLED) {
+            if (spilledValues == null)
+                spilledValues = new Object[primitiveValues.length];
+            spilledValues[slot] = value;
+        } else if (spilledValues != null) {
+            spilledValues[slot] = null;
+        }
+        primitiveValues[slot] = packedValue;
+        return oldValue;
     }
 
     /**
@@ -84,15 +197,8 @@ public class Event implements Savable, Viewable {
      */
     public int returnMaxAttendees() {
         // returns the maximum number of attendees, if the event doesn't have a maximum, returns -1
-        Map<String, Object> eventDetailsMap = getEventDetails();
-        int maxAttendees;
-        if (eventDetailsMap.get("Max Attendees") == null) {
-            maxAttendees = -1;
-        }
-        else {
-            maxAttendees = (Integer) eventDetailsMap.get("Max Attendees");
-        }
-        return maxAttendees;
+        Object maxAttendees = getFieldValue(MAX_ATTENDEES_FIELD);
+        return maxAttendees == null ? -1 : (Integer) maxAttendees;
     }
 
     /**
@@ -165,20 +271,53 @@ public class Event implements Savable, Viewable {
     }
 
     /**
-     * Gets the details of this event
+     * Gets the details of this event, as a map from field name to value. The map is a view of the event's field values,
+     * made when this is called: setting a value in it sets the value of the field, but fields can't be added or removed.
+     * getFieldValue & setFieldValue are faster for a single field.
      * @return Map</String,Object> The details of this event
      */
     public Map<String, Object> getEventDetails() {
-        return eventDetails;
+        return new FieldValueMap();
     }
 
     /**
      * Gets the map with FieldName as key and a list as the value, the first object is the field's data type and
-     * the second object is whether or not the field is a required one.
+     * the second object is whether or not the field is a required one. The map is shared & can't be modified.
      * @return Map</String, List<Object>> The map with FieldName as key and FieldSpecs as value of this event
      */
     public Map<String, Pair<Class<?>, Boolean>> getFieldNameAndFieldSpecsMap() {
-        return fieldNameAndFieldSpecs;
+        return schema.getFieldSpecs();
+    }
+
+    /**
+     * Gets the schema of this event, which is shared by every event created from the same template version
+     * @return EventSchema The schema of this event
+     */
+    public EventSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Gets the usernames of the users waiting for a place in this event, the first of which gets the next place
+     * @return Deque</String> The waitlist of this event
+     */
+    public Deque<String> getWaitlist() {
+        return waitlist;
+    }
+
+    /**
+     * Gets the version of this event, which changes whenever the event does
+     * @return long The version of this event
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Changes the version of this event, after the event has changed
+     */
+    public synchronized void incrementVersion() {
+        version++;
     }
 
     /**
@@ -217,4 +356,75 @@ public class Event implements Savable, Viewable {
     public String getID() {
         return eventId;
     }
+
+    /**
+     * Map view of the field values of the event.
+     */
+    private class FieldValueMap extends AbstractMap<String, Object> {
+        @Override
+        public int size() {
+            return schema.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && schema.getPosition((String) key) >= 0;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return key instanceof String ? getFieldValue((String) key) : null;
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return setFieldValue(key, value);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public int size() {
+                    return schema.size();
+                }
+
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int position = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return position < schema.size();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!hasNext())
+                                throw new NoSuchElementException();
+                            return new FieldValueEntry(position++);
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * Entry of the map view, for the field at a position of the schema.
+     */
+    private class FieldValueEntry extends AbstractMap.SimpleEntry<String, Object> {
+        private static final long serialVersionUID = 1L;
+
+        FieldValueEntry(int position) {
+            super(schema.getFieldName(position), getFieldValue(position));
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            super.setValue(value);
+            return setFieldValue(getKey(), value);
+        }
+    }
 }
@@ -0,0 +1,189 @@
+package entities;
+
+import utility.Pair;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The field names, data types & whether each field is required, of the events created from one version of a template.
+ * Schemas are immutable & interned: all events with the same field specs refer to the same EventSchema, instead of each
+ * holding a copy. Editing a template doesn't change the schema of its existing events; events created afterwards get
+ * the schema of the new version.
+ * The schema also lays out how an event stores its field values. Fields are numbered by position, in name order, & each
+ * field has a slot: Integer, Boolean & LocalDateTime fields get a slot in the event's array of longs, the other fields a
+ * slot in its array of objects.
+ */
+public class EventSchema {
+    // Every schema that has been made, by key. There are only as many as there are distinct template versions.
+    private static final Map<String, EventSchema> schemas = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final Map<String, Pair<Class<?>, Boolean>> fieldSpecs;
+    private final String[] fieldNames;
+    private final Class<?>[] dataTypes;
+    private final Map<String, Integer> positions = new HashMap<>();
+    // The slot of each field, in the array of longs if the field is primitive & in the array of objects otherwise.
+    private final int[] slots;
+    private final boolean[] primitive;
+    private int primitiveCount;
+    private int objectCount;
+
+    private EventSchema(String key, Map<String, Pair<Class<?>, Boolean>> fieldSpecs) {
+        this.key = key;
+        this.fieldSpecs = Collections.unmodifiableMap(fieldSpecs);
+        fieldNames = new String[fieldSpecs.size()];
+        dataTypes = new Class<?>[fieldSpecs.size()];
+        slots = new int[fieldSpecs.size()];
+        primitive = new boolean[fieldSpecs.size()];
+        int position = 0;
+        for (Map.Entry<String, Pair<Class<?>, Boolean>> entry: fieldSpecs.entrySet()) {
+            Class<?> dataType = entry.getValue().getFirst();
+            fieldNames[position] = entry.getKey();
+            dataTypes[position] = dataType;
+            positions.put(entry.getKey(), position);
+            primitive[position] = dataType == Integer.class || dataType == Boolean.class ||
+                    dataType == LocalDateTime.class;
+            slots[position] = primitive[position] ? primitiveCount++ : objectCount++;
+            position++;
+        }
+    }
+
+    /**
+     * @param template A template.
+     * @return The schema of the current version of the template.
+     */
+    public static EventSchema of(Template template) {
+        Map<String, Pair<Class<?>, Boolean>> fieldSpecs = new HashMap<>();
+        for (FieldSpecs field: template.getFieldDescriptions())
+            fieldSpecs.put(field.getFieldName(), new Pair<>(field.getDataType(), field.isRequired()));
+        return of(fieldSpecs);
+    }
+
+    /**
+     * @param fieldSpecs The data type & whether it's required for each field name.
+     * @return The schema with these field specs. The map isn't kept, so it can be modified afterwards.
+     */
+    public static EventSchema of(Map<String, Pair<Class<?>, Boolean>> fieldSpecs) {
+        // Sorted by name, so the same field specs always give the same key.
+        SortedMap<String, Pair<Class<?>, Boolean>> sortedFieldSpecs = new TreeMap<>(fieldSpecs);
+        StringBuilder key = new StringBuilder();
+        for (Map.Entry<String, Pair<Class<?>, Boolean>> entry: sortedFieldSpecs.entrySet())
+            key.append(entry.getKey()).append('\0').append(entry.getValue().getFirst().getName()).append('\0')
+                    .append(entry.getValue().getSecond()).append('\0');
+
+        EventSchema schema = schemas.get(key.toString());
+        if (schema != null)
+            return schema;
+        Map<String, Pair<Class<?>, Boolean>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, Pair<Class<?>, Boolean>> entry: sortedFieldSpecs.entrySet())
+            copy.put(entry.getKey(), new FieldSpec(entry.getValue().getFirst(), entry.getValue().getSecond()));
+        EventSchema newSchema = new EventSchema(key.toString(), copy);
+        schema = schemas.putIfAbsent(newSchema.key, newSchema);
+        return schema == null ? newSchema : schema;
+    }
+
+    /**
+     * Gets the map with field name as key, and the field's data type & whether it's required as value, ordered by
+     * field name. The map & the pairs in it are shared by every event with this schema, so neither can be modified:
+     * setting a value of one of the pairs throws an UnsupportedOperationException.
+     * @return Map</String, Pair<Class<?>, Boolean>> The field specs of this schema
+     */
+    public Map<String, Pair<Class<?>, Boolean>> getFieldSpecs() {
+        return fieldSpecs;
+    }
+
+    /**
+     * @return Number of fields.
+     */
+    public int size() {
+        return fieldNames.length;
+    }
+
+    /**
+     * @param fieldName Name of a field.
+     * @return Position of the field, or -1 if the schema has no such field.
+     */
+    public int getPosition(String fieldName) {
+        Integer position = positions.get(fieldName);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * @param position Position of a field.
+     * @return Name of the field.
+     */
+    public String getFieldName(int position) {
+        return fieldNames[position];
+    }
+
+    /**
+     * @param position Position of a field.
+     * @return Data type of the field.
+     */
+    public Class<?> getDataType(int position) {
+        return dataTypes[position];
+    }
+
+    /**
+     * @param position Position of a field.
+     * @return Whether the value of the field is stored in the array of longs, rather than the array of objects.
+     */
+    public boolean isPrimitive(int position) {
+        return primitive[position];
+    }
+
+    /**
+     * @param position Position of a field.
+     * @return Slot of the field in the array its value is stored in.
+     */
+    public int getSlot(int position) {
+        return slots[position];
+    }
+
+    /**
+     * @return Length of the array of longs of an event with this schema.
+     */
+    public int getPrimitiveCount() {
+        return primitiveCount;
+    }
+
+    /**
+     * @return Length of the array of objects of an event with this schema.
+     */
+    public int getObjectCount() {
+        return objectCount;
+    }
+
+    /**
+     * @return String that is equal for two schemas exactly when they have the same field specs.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return fieldSpecs.keySet().toString();
+    }
+
+    /**
+     * Data type & whether it's required of a field of a schema, which can't be changed once the schema is made.
+     */
+    private static class FieldSpec extends Pair<Class<?>, Boolean> {
+        FieldSpec(Class<?> dataType, Boolean required) {
+            super(dataType, required);
+        }
+
+        @Override
+        public void setFirst(Class<?> first) {
+            throw new UnsupportedOperationException("The field specs of a schema can't be modified");
+        }
+
+        @Override
+        public void setSecond(Boolean second) {
+            throw new UnsupportedOperationException("The field specs of a schema can't be modified");
+        }
+    }
+}
@@ -1,90 +1,395 @@
 package gateways;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import utility.Savable;
 
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.lang.reflect.Array;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
- * Gateway that saves & reads a specific entity type to & from a json file.
+ * Gateway that saves & reads a specific entity type to & from json files.
+ * The elements are partitioned by the hash of their id into one or more shards, each with its own json file & journal.
+ * Changes marked through markCreated, markUpdated & markDeleted are saved to the journal of the shard they belong to,
+ * so saving only ever rewrites the shards that have changed. With more than one shard, the shards are read in
+ * parallel.
+ * In write-ahead mode every marked change is appended to the journal right away, and the journals are folded into the
+ * json files by a background thread.
  * @param <T> Entity type.
  */
 public abstract class EntityGateway<T extends Savable> implements IGateway<T> {
     private final Class<T> dataType;
     private final String path;
+    private final boolean writeAhead;
     private final Gson gson;
-    private Map<String, T> elements;
+    private final List<Shard<T>> shards = new ArrayList<>();
+    private boolean loaded;
+
+    private ExecutorService compactor;
+    private final Object writeResultLock = new Object();
+    private WriteResult lastWriteResult;
 
     /**
-     * Constructs an EntityGateway Element.
+     * Constructs an EntityGateway Element. The json file is read the first time the elements are requested.
      * @param dataType The class object of data type T.
      * @param path Path of relevant json file.
      */
     public EntityGateway(Class<T> dataType, String path) {
+        this(dataType, path, false);
+    }
+
+    /**
+     * Constructs an EntityGateway Element. The json file is read the first time the elements are requested.
+     * @param dataType The class object of data type T.
+     * @param path Path of relevant json file.
+     * @param writeAhead Whether every marked change should be written to the journal as soon as it is marked.
+     */
+    public EntityGateway(Class<T> dataType, String path, boolean writeAhead) {
+        this(dataType, path, writeAhead, 1);
+    }
+
+    /**
+     * Constructs an EntityGateway Element. The json files are read the first time the elements are requested.
+     * With more than one shard, the elements are stored in files named after path with the index of the shard added,
+     * e.g. events-0.json, events-1.json, ... If the file at path itself exists, its elements are moved into the
+     * shards when they are first read (see migrateUnshardedFile).
+     * @param dataType The class object of data type T.
+     * @param path Path of relevant json file.
+     * @param writeAhead Whether every marked change should be written to the journal as soon as it is marked.
+     * @param shardCount Number of json files the elements are partitioned into.
+     */
+    public EntityGateway(Class<T> dataType, String path, boolean writeAhead, int shardCount) {
+        if (shardCount < 1)
+            throw new IllegalArgumentException("Shard count must be at least 1, was " + shardCount);
         this.dataType = dataType;
         this.path = path;
+        this.writeAhead = writeAhead;
         gson = getGsonBuilder().create();
-        readElements();
+        for (int i = 0; i < shardCount; i++)
+            shards.add(new Shard<>(this, dataType, getShardPath(path, i, shardCount), writeAhead));
+    }
+
+    /**
+     * @param path Path of the json file of a gateway.
+     * @param index Index of a shard.
+     * @param shardCount Number of shards of the gateway.
+     * @return Path of the json file of the shard.
+     */
+    public static String getShardPath(String path, int index, int shardCount) {
+        if (shardCount == 1)
+            return path;
+        return path.replaceFirst("\\.json$", "") + "-" + index + ".json";
+    }
+
+    /**
+     * @return Number of json files the elements are partitioned into.
+     */
+    public int getShardCount() {
+        return shards.size();
     }
 
     @Override
-    public List<T> getAllElements() {
-        return new ArrayList<>(elements.values());
+    public synchronized List<T> getAllElements() {
+        load(null);
+        List<T> elements = new ArrayList<>();
+        for (Shard<T> shard: shards)
+            shard.forEachElement(elements::add);
+        return elements;
+    }
+
+    @Override
+    public synchronized Map<String, T> getElementMap() {
+        load(null);
+        Map<String, T> elements = new HashMap<>();
+        for (Shard<T> shard: shards)
+            shard.forEachElement(element -> elements.put(element.getID(), element));
+        return elements;
+    }
+
+    @Override
+    public synchronized void forEachElement(Consumer<T> consumer) {
+        if (!loaded) {
+            load(consumer);
+            return;
+        }
+        for (Shard<T> shard: shards)
+            shard.forEachElement(consumer);
     }
 
     @Override
-    public Map<String, T> getElementMap() {
-        return new HashMap<>(elements);
+    public synchronized void saveAllElements(List<T> elements) {
+        writeAllElements(elements);
     }
 
     @Override
-    public void saveAllElements(List<T> elements) {
-        this.elements = new HashMap<>();
+    public synchronized void saveAllElements(Map<String, T> elements) {
+        writeAllElements(new ArrayList<>(elements.values()));
+    }
+
+    /**
+     * Replaces every element & rewrites every shard.
+     * @param elements The new elements.
+     * @return Whether every shard was written.
+     */
+    synchronized boolean writeAllElements(List<T> elements) {
+        List<List<T>> partitions = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++)
+            partitions.add(new ArrayList<>());
         for (T element: elements)
-            this.elements.put(element.getID(), element);
-        writeElements();
+            partitions.get(getShardIndex(element.getID())).add(element);
+
+        loaded = true;
+        boolean written = true;
+        for (int i = 0; i < shards.size(); i++)
+            written &= shards.get(i).saveAll(partitions.get(i));
+        return written;
+    }
+
+    @Override
+    public synchronized void markCreated(T element) {
+        load(null);
+        getShard(element.getID()).put(element);
+    }
+
+    @Override
+    public synchronized void markUpdated(String id) {
+        load(null);
+        getShard(id).update(id);
+    }
+
+    @Override
+    public synchronized void markUpdated(Collection<String> ids) {
+        load(null);
+        for (Map.Entry<Shard<T>, List<String>> shardIds: groupByShard(ids).entrySet())
+            shardIds.getKey().update(shardIds.getValue());
     }
 
     @Override
-    public void saveAllElements(Map<String, T> elements) {
-        this.elements = new HashMap<>(elements);
-        writeElements();
-    }
-
-    private void readElements() {
-        try {
-            FileReader fileReader = new FileReader(path);
-            Class<T[]> arrayType = (Class<T[]>) Array.newInstance(dataType, 0).getClass();
-            T[] elements = gson.fromJson(fileReader, arrayType);
-            fileReader.close();
-
-            this.elements = new HashMap<>();
-            for (T element: elements)
-                this.elements.put(element.getID(), element);
-        } catch (IOException e) {
-            e.printStackTrace();
+    public synchronized void markDeleted(String id) {
+        load(null);
+        getShard(id).delete(id);
+    }
+
+    @Override
+    public synchronized void markDeleted(Collection<String> ids) {
+        load(null);
+        for (Map.Entry<Shard<T>, List<String>> shardIds: groupByShard(ids).entrySet())
+            shardIds.getKey().delete(shardIds.getValue());
+    }
+
+    @Override
+    public synchronized void saveChanges() {
+        for (Shard<T> shard: shards)
+            shard.saveChanges();
+    }
+
+    private Map<Shard<T>, List<String>> groupByShard(Collection<String> ids) {
+        Map<Shard<T>, List<String>> shardIds = new LinkedHashMap<>();
+        for (String id: ids)
+            shardIds.computeIfAbsent(getShard(id), shard -> new ArrayList<>()).add(id);
+        return shardIds;
+    }
+
+    private Shard<T> getShard(String id) {
+        return shards.get(getShardIndex(id));
+    }
+
+    private int getShardIndex(String id) {
+        return Math.floorMod(id.hashCode(), shards.size());
+    }
+
+    /**
+     * Reads the elements of every shard, unless they have already been read.
+     * @param elementListener Consumer that receives each element once it is read, or null.
+     */
+    private void load(Consumer<T> elementListener) {
+        if (loaded)
+            return;
+        loaded = true;
+
+        if (shards.size() == 1) {
+            shards.get(0).load(elementListener);
+            return;
+        }
+
+        migrateUnshardedFile();
+        loadInParallel();
+        if (elementListener != null) {
+            for (Shard<T> shard: shards)
+                shard.forEachElement(elementListener);
+        }
+    }
+
+    private void loadInParallel() {
+        int threadCount = Math.min(shards.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService loader = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> loads = new ArrayList<>();
+        for (Shard<T> shard: shards)
+            loads.add(loader.submit(() -> shard.load(null)));
+        for (Future<?> load: loads) {
+            try {
+                load.get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        loader.shutdown();
+    }
+
+    /**
+     * Moves the elements of the unsharded json file into the shards, if that file exists. As long as the unsharded
+     * file exists it holds the current elements, & the shard files are only a copy of them that is never changed: the
+     * unsharded file is removed once every shard has been written, & if that fails this gateway keeps reading & saving
+     * the unsharded file (& its journal) instead of the shards. This way a move that fails or is interrupted is simply
+     * redone the next time, & redoing it can never overwrite changes saved to the shards.
+     */
+    private void migrateUnshardedFile() {
+        if (!new File(path).exists())
+            return;
+
+        Shard<T> unsharded = new Shard<>(this, dataType, path, writeAhead);
+        List<T> elements = new ArrayList<>();
+        unsharded.forEachElement(elements::add);
+        if (writeAllElements(elements) && unsharded.remove())
+            return;
+
+        System.err.println("Could not move the elements of " + path + " into shards, they are kept in it until the " +
+                "move succeeds.");
+        shards.clear();
+        shards.add(unsharded);
+    }
+
+    /**
+     * Folds the journal of every shard into its json file, so that the json files alone hold every element.
+     * @return Whether every json file was written.
+     */
+    synchronized boolean compactAll() {
+        load(null);
+        boolean written = true;
+        for (Shard<T> shard: shards)
+            written &= shard.compact();
+        return written;
+    }
+
+    /**
+     * Moves the json files of the shards to the paths of the shards of a gateway at another path, with the same number
+     * of shards. Each file replaces the file at its new path atomically. The journals must be empty, e.g. right after
+     * writeAllElements, since they aren't moved.
+     * @param newPath Path of the json file of the other gateway.
+     * @return Whether every json file was moved. If not, the files that weren't moved are kept at their current paths.
+     */
+    synchronized boolean moveShardsTo(String newPath) {
+        boolean moved = true;
+        for (int i = 0; i < shards.size(); i++) {
+            String shardPath = shards.get(i).getPath();
+            try {
+                Files.move(Paths.get(shardPath), Paths.get(getShardPath(newPath, i, shards.size())),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.err.println("Could not move " + shardPath + ": " + e.getMessage());
+                moved = false;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Removes the json files & journals of this gateway that aren't among the given paths. Used once the elements
+     * have been written to a gateway with a different number of shards.
+     * @param keptPaths Paths of json files that should be kept.
+     */
+    synchronized void removeShardsExcept(Set<String> keptPaths) {
+        for (Shard<T> shard: shards) {
+            if (!keptPaths.contains(shard.getPath()) && !shard.remove())
+                System.err.println("Could not remove " + shard.getPath());
         }
     }
 
-    private void writeElements() {
-        try {
-            T[] emptyArray = (T[]) Array.newInstance(dataType, 0);
-            T[] elements = this.elements.values().toArray(emptyArray);
+    /**
+     * @return Single thread that folds journals into json files in write-ahead mode.
+     */
+    synchronized ExecutorService getCompactor() {
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "compactor-" + path);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return compactor;
+    }
+
+    /**
+     * Called by the shards after each write of a json file.
+     * @param result Statistics of the write.
+     */
+    void recordWrite(WriteResult result) {
+        synchronized (writeResultLock) {
+            lastWriteResult = result;
+        }
+    }
+
+    /**
+     * Reads the elements of a json file, passing each element to the consumer as soon as it is decoded. By default the
+     * file is a json array of elements.
+     * @param reader Reader positioned at the start of the json file.
+     * @param consumer Consumer that receives every element of the file.
+     * @return Whether the file is in the current format. Files in an older format are rewritten the next time changes
+     * are saved.
+     * @throws IOException If the file could not be read.
+     */
+    protected boolean readDocument(JsonReader reader, Consumer<T> consumer) throws IOException {
+        TypeAdapter<T> adapter = gson.getAdapter(dataType);
+        reader.beginArray();
+        while (reader.hasNext())
+            consumer.accept(adapter.read(reader));
+        reader.endArray();
+        return true;
+    }
+
+    /**
+     * Writes the elements as a json file, in the format that readDocument reads.
+     * @param writer Writer of the json file.
+     * @param elements The elements to be written.
+     * @throws IOException If the file could not be written.
+     */
+    protected void writeDocument(JsonWriter writer, List<T> elements) throws IOException {
+        TypeAdapter<T> adapter = gson.getAdapter(dataType);
+        writer.beginArray();
+        for (T element: elements)
+            adapter.write(writer, element);
+        writer.endArray();
+    }
+
+    /**
+     * @return The class object of the entity type.
+     */
+    Class<T> getDataType() {
+        return dataType;
+    }
 
-            FileWriter fileWriter = new FileWriter(path);
-            gson.toJson(elements, fileWriter);
-            fileWriter.flush();
-            fileWriter.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * @return Gson object that serializes & deserializes single elements, as built from getGsonBuilder.
+     */
+    protected Gson getGson() {
+        return gson;
+    }
+
+    /**
+     * @return Statistics of the last write of a json file, or null if no file has been written yet.
+     */
+    public WriteResult getLastWriteResult() {
+        synchronized (writeResultLock) {
+            return lastWriteResult;
         }
     }
 
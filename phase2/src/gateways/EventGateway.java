@@ -1,19 +1,34 @@
 package gateways;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import utility.EventPrivacyType;
 import utility.Pair;
 import entities.Event;
+import entities.EventSchema;
 
-import java.lang.reflect.Field;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Gateway that saves & reads Events to & from a json file.
+ * The json file is written in version 2 of the event format:
+ * {"version": 2, "schemas": [[[fieldName, className, required], ...], ...], "events": [{..., "schema": index,
+ * "values": [...]}, ...]}
+ * Each distinct set of field specs is stored once in "schemas", & every event stores its field values as a flat array
+ * in the order of its schema. Files in version 1 (a json array of events that each carry their own field specs) are
+ * still read, & are migrated to version 2 the next time they are saved.
+ * Events with users waiting for a place also store their "waitlist", an array of usernames in order. Events without
+ * one leave it out, so files written before waitlists existed are read as having empty waitlists.
  */
 public class EventGateway extends EntityGateway<Event> {
+    private static final int FORMAT_VERSION = 2;
+
     /**
         * Constructs an EventGateway Element.
         * @param path Path of relevant json file.
@@ -22,15 +37,281 @@ public class EventGateway extends EntityGateway<Event> {
         super(Event.class, path);
     }
 
+    /**
+     * Constructs an EventGateway Element.
+     * @param path Path of relevant json file.
+     * @param writeAhead Whether every change to an event should be written to the journal as soon as it is made,
+     *                   instead of when the events are saved.
+     */
+    public EventGateway(String path, boolean writeAhead) {
+        super(Event.class, path, writeAhead);
+    }
+
+    /**
+     * Constructs an EventGateway Element that partitions the events into several json files.
+     * @param path Path of relevant json file. The shards are stored next to it, e.g. events-0.json, events-1.json, ...
+     * @param writeAhead Whether every change to an event should be written to the journal as soon as it is made,
+     *                   instead of when the events are saved.
+     * @param shardCount Number of json files the events are partitioned into.
+     */
+    public EventGateway(String path, boolean writeAhead, int shardCount) {
+        super(Event.class, path, writeAhead, shardCount);
+    }
+
     @Override
     protected GsonBuilder getGsonBuilder() {
         GsonBuilder gsonBuilder = new GsonBuilder();
-        gsonBuilder.setPrettyPrinting();
         gsonBuilder.registerTypeAdapter(Event.class, new EventSerializer());
         gsonBuilder.registerTypeAdapter(Event.class, new EventDeserializer());
         return gsonBuilder;
     }
 
+    @Override
+    protected boolean readDocument(JsonReader reader, Consumer<Event> consumer) throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+            super.readDocument(reader, consumer);
+            return false;
+        }
+
+        List<FieldSchema> schemas = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "version":
+                    int version = reader.nextInt();
+                    if (version > FORMAT_VERSION)
+                        throw new JsonParseException("Unsupported event file version " + version);
+                    break;
+                case "schemas":
+                    reader.beginArray();
+                    while (reader.hasNext())
+                        schemas.add(readSchema(reader));
+                    reader.endArray();
+                    break;
+                case "events":
+                    reader.beginArray();
+                    while (reader.hasNext())
+                        consumer.accept(readEvent(reader, schemas));
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return true;
+    }
+
+    @Override
+    protected void writeDocument(JsonWriter writer, List<Event> events) throws IOException {
+        // The schemas are collected first, so that they are read before any event that refers to them. Event schemas
+        // are interned, so events with the same field specs have the same schema object.
+        Map<EventSchema, Integer> schemaIndexes = new IdentityHashMap<>();
+        List<FieldSchema> schemas = new ArrayList<>();
+        int[] eventSchemas = new int[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            EventSchema eventSchema = events.get(i).getSchema();
+            Integer index = schemaIndexes.get(eventSchema);
+            if (index == null) {
+                index = schemas.size();
+                schemaIndexes.put(eventSchema, index);
+                schemas.add(new FieldSchema(eventSchema));
+            }
+            eventSchemas[i] = index;
+        }
+
+        writer.beginObject();
+        writer.name("version").value(FORMAT_VERSION);
+        writer.name("schemas").beginArray();
+        for (FieldSchema schema: schemas)
+            writeSchema(writer, schema);
+        writer.endArray();
+        writer.name("events").beginArray();
+        for (int i = 0; i < events.size(); i++)
+            writeEvent(writer, events.get(i), eventSchemas[i], schemas.get(eventSchemas[i]));
+        writer.endArray();
+        writer.endObject();
+    }
+
+    private FieldSchema readSchema(JsonReader reader) throws IOException {
+        FieldCodecRegistry codecs = FieldCodecRegistry.getInstance();
+        List<String> fieldNames = new ArrayList<>();
+        List<FieldCodec<?>> fieldCodecs = new ArrayList<>();
+        List<Boolean> required = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginArray();
+            fieldNames.add(reader.nextString());
+            fieldCodecs.add(codecs.getCodec(reader.nextString()));
+            required.add(reader.nextBoolean());
+            reader.endArray();
+        }
+        reader.endArray();
+        return new FieldSchema(fieldNames, fieldCodecs, required);
+    }
+
+    private void writeSchema(JsonWriter writer, FieldSchema schema) throws IOException {
+        writer.beginArray();
+        for (int i = 0; i < schema.size(); i++) {
+            writer.beginArray();
+            writer.value(schema.getFieldName(i));
+            writer.value(schema.getCodec(i).getDataType().getName());
+            writer.value(schema.isRequired(i));
+            writer.endArray();
+        }
+        writer.endArray();
+    }
+
+    private Event readEvent(JsonReader reader, List<FieldSchema> schemas) throws IOException {
+        Map<String, String> properties = new HashMap<>();
+        int numAttendees = 0;
+        boolean suspended = false;
+        List<String> waitlist = new ArrayList<>();
+        FieldSchema schema = null;
+        Map<String, Object> eventDetails = new HashMap<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("numAttendees")) {
+                numAttendees = reader.nextInt();
+            } else if (name.equals("suspended")) {
+                suspended = reader.nextBoolean();
+            } else if (name.equals("waitlist")) {
+                reader.beginArray();
+                while (reader.hasNext())
+                    waitlist.add(reader.nextString());
+                reader.endArray();
+            } else if (name.equals("schema")) {
+                int index = reader.nextInt();
+                if (index < 0 || index >= schemas.size())
+                    throw new JsonParseException("Unknown event schema " + index);
+                schema = schemas.get(index);
+            } else if (name.equals("values")) {
+                if (schema == null)
+                    throw new JsonParseException("Event values appear before the event schema");
+                readValues(reader, schema, eventDetails);
+            } else {
+                properties.put(name, reader.nextString());
+            }
+        }
+        reader.endObject();
+        if (schema == null)
+            throw new JsonParseException("Event " + properties.get("eventId") + " has no schema");
+
+        return new Event(
+                properties.get("eventId"),
+                properties.get("eventName"),
+                properties.get("eventOwner"),
+                properties.get("eventType"),
+                numAttendees,
+                suspended,
+                EventPrivacyType.valueOf(properties.get("privacyType")),
+                LocalDateTime.parse(properties.get("createdTime")),
+                LocalDateTime.parse(properties.get("editTime")),
+                eventDetails,
+                schema.getEventSchema(),
+                waitlist);
+    }
+
+    private void readValues(JsonReader reader, FieldSchema schema, Map<String, Object> eventDetails)
+            throws IOException {
+        FieldCodecRegistry codecs = FieldCodecRegistry.getInstance();
+        JsonParser jsonParser = new JsonParser();
+        reader.beginArray();
+        for (int i = 0; i < schema.size(); i++)
+            eventDetails.put(schema.getFieldName(i), codecs.decode(schema.getCodec(i), jsonParser.parse(reader)));
+        reader.endArray();
+    }
+
+    private void writeEvent(JsonWriter writer, Event event, int schemaIndex, FieldSchema schema) throws IOException {
+        FieldCodecRegistry codecs = FieldCodecRegistry.getInstance();
+
+        writer.beginObject();
+        writer.name("eventId").value(event.getEventId());
+        writer.name("eventName").value(event.getEventName());
+        writer.name("eventOwner").value(event.getEventOwner());
+        writer.name("eventType").value(event.getEventType());
+        writer.name("numAttendees").value(event.getNumAttendees());
+        writer.name("suspended").value(event.isSuspended());
+        writer.name("privacyType").value(event.getPrivacyType().toString());
+        writer.name("createdTime").value(event.getCreatedTime().toString());
+        writer.name("editTime").value(event.getEditTime().toString());
+        if (!event.getWaitlist().isEmpty()) {
+            writer.name("waitlist").beginArray();
+            for (String username: event.getWaitlist())
+                writer.value(username);
+            writer.endArray();
+        }
+        writer.name("schema").value(schemaIndex);
+        writer.name("values").beginArray();
+        for (int i = 0; i < schema.size(); i++) {
+            Class<?> dataType = schema.getCodec(i).getDataType();
+            getGson().toJson(codecs.encode(dataType, event.getFieldValue(schema.getFieldName(i))), writer);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    /**
+     * The field names, data types & whether each field is required, of one or more events, in a fixed order. Events
+     * with the same field specs share a schema in the json file.
+     */
+    private static class FieldSchema {
+        private final List<String> fieldNames;
+        private final List<FieldCodec<?>> codecs;
+        private final List<Boolean> required;
+        private EventSchema eventSchema;
+
+        public FieldSchema(List<String> fieldNames, List<FieldCodec<?>> codecs, List<Boolean> required) {
+            this.fieldNames = fieldNames;
+            this.codecs = codecs;
+            this.required = required;
+        }
+
+        public FieldSchema(EventSchema eventSchema) {
+            this(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            this.eventSchema = eventSchema;
+            FieldCodecRegistry codecRegistry = FieldCodecRegistry.getInstance();
+            // The field specs of an event schema are sorted by name.
+            for (Map.Entry<String, Pair<Class<?>, Boolean>> entry: eventSchema.getFieldSpecs().entrySet()) {
+                fieldNames.add(entry.getKey());
+                codecs.add(codecRegistry.getCodec(entry.getValue().getFirst()));
+                required.add(entry.getValue().getSecond());
+            }
+        }
+
+        public int size() {
+            return fieldNames.size();
+        }
+
+        public String getFieldName(int index) {
+            return fieldNames.get(index);
+        }
+
+        public FieldCodec<?> getCodec(int index) {
+            return codecs.get(index);
+        }
+
+        public boolean isRequired(int index) {
+            return required.get(index);
+        }
+
+        /**
+         * @return The interned event schema with these field specs, shared by every event that reads this schema.
+         */
+        public EventSchema getEventSchema() {
+            if (eventSchema == null) {
+                Map<String, Pair<Class<?>, Boolean>> fieldSpecs = new HashMap<>();
+                for (int i = 0; i < size(); i++)
+                    fieldSpecs.put(fieldNames.get(i), new Pair<>(codecs.get(i).getDataType(), required.get(i)));
+                eventSchema = EventSchema.of(fieldSpecs);
+            }
+            return eventSchema;
+        }
+    }
+
     // source https://futurestud.io/tutorials/gson-advanced-custom-serialization-part-1
     /**
      * Serializes Event objects into json.
@@ -54,6 +335,12 @@ public class EventGateway extends EntityGateway<Event> {
             json.addProperty("numAttendees", event.getNumAttendees());
             json.addProperty("suspended", event.isSuspended());
             json.addProperty("privacyType", event.getPrivacyType().toString());
+            if (!event.getWaitlist().isEmpty()) {
+                JsonArray waitlist = new JsonArray();
+                for (String username: event.getWaitlist())
+                    waitlist.add(username);
+                json.add("waitlist", waitlist);
+            }
         }
 
         private void addDates(Event event, JsonObject json) {
@@ -63,15 +350,15 @@ public class EventGateway extends EntityGateway<Event> {
 
         private void addFields(Event event, JsonObject json) {
             Map<String, Pair<Class<?>, Boolean>> fieldNameAndFieldSpecs = event.getFieldNameAndFieldSpecsMap();
-            Map<String, Object> eventDetails = event.getEventDetails();
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
+            FieldCodecRegistry codecs = FieldCodecRegistry.getInstance();
 
             JsonObject fields = new JsonObject();
             for (String fieldName: fieldNameAndFieldSpecs.keySet()) {
                 Pair<Class<?>, Boolean> fieldData = fieldNameAndFieldSpecs.get(fieldName);
                 String className = fieldData.getFirst().getName();
                 Boolean required = fieldData.getSecond();
-                String value = gson.toJson(eventDetails.get(fieldName));
+                // Values are stored as json strings to keep the file format of older versions.
+                String value = codecs.encode(fieldData.getFirst(), event.getFieldValue(fieldName)).toString();
 
                 JsonArray array = new JsonArray();
                 array.add(className);
@@ -91,39 +378,41 @@ public class EventGateway extends EntityGateway<Event> {
      * Implementation of JsonDeserializer.
      */
     private static class EventDeserializer implements JsonDeserializer<Event> {
+        private final JsonParser jsonParser = new JsonParser();
+
         @Override
         public Event deserialize(JsonElement jsonElement, Type type, JsonDeserializationContext jsonDeserializationContext) throws JsonParseException {
             JsonObject json = jsonElement.getAsJsonObject();
-            Event event = new Event();
-            getPrimitives(json, event);
-            getDates(json, event);
-            getFields(json, event);
-            return event;
-        }
-
-        private void getPrimitives(JsonObject json, Event event) {
-            setField(event, "eventId", json.get("eventId").getAsString());
-            setField(event, "eventName", json.get("eventName").getAsString());
-            setField(event, "eventOwner", json.get("eventOwner").getAsString());
-            setField(event, "eventType", json.get("eventType").getAsString());
-            setField(event, "numAttendees", json.get("numAttendees").getAsInt());
-            setField(event, "suspended", json.get("suspended").getAsBoolean());
+            Map<String, Pair<Class<?>, Boolean>> fieldNameAndTypeMap = new HashMap<>();
+            Map<String, Object> eventDetails = new HashMap<>();
+            getFields(json, fieldNameAndTypeMap, eventDetails);
 
-            String privacyTypeName = json.get("privacyType").getAsString();
-            setField(event, "privacyType", EventPrivacyType.valueOf(privacyTypeName));
+            return new Event(
+                    json.get("eventId").getAsString(),
+                    json.get("eventName").getAsString(),
+                    json.get("eventOwner").getAsString(),
+                    json.get("eventType").getAsString(),
+                    json.get("numAttendees").getAsInt(),
+                    json.get("suspended").getAsBoolean(),
+                    EventPrivacyType.valueOf(json.get("privacyType").getAsString()),
+                    LocalDateTime.parse(json.get("createdTime").getAsString()),
+                    LocalDateTime.parse(json.get("editTime").getAsString()),
+                    eventDetails,
+                    EventSchema.of(fieldNameAndTypeMap),
+                    getWaitlist(json));
         }
 
-        private void getDates(JsonObject json, Event event) {
-            LocalDateTime createdTime = LocalDateTime.parse(json.get("createdTime").getAsString());
-            setField(event, "createdTime", createdTime);
-            LocalDateTime editTime = LocalDateTime.parse(json.get("editTime").getAsString());
-            setField(event, "editTime", editTime);
+        private List<String> getWaitlist(JsonObject json) {
+            List<String> waitlist = new ArrayList<>();
+            if (json.has("waitlist")) {
+                for (JsonElement username: json.getAsJsonArray("waitlist"))
+                    waitlist.add(username.getAsString());
+            }
+            return waitlist;
         }
 
-        private void getFields(JsonObject json, Event event) {
-            Map<String, Pair<Class<?>, Boolean>> fieldNameAndTypeMap = new HashMap<>();
-            Map<String, Object> eventDetails = new HashMap<>();
-
+        private void getFields(JsonObject json, Map<String, Pair<Class<?>, Boolean>> fieldNameAndTypeMap,
+                               Map<String, Object> eventDetails) {
             JsonObject fields = json.get("fields").getAsJsonObject();
             for (String fieldName: fields.keySet()) {
                 JsonArray fieldData = fields.get(fieldName).getAsJsonArray();
@@ -131,38 +420,18 @@ public class EventGateway extends EntityGateway<Event> {
                 fieldNameAndTypeMap.put(fieldName, field.getFirst());
                 eventDetails.put(fieldName, field.getSecond());
             }
-
-            setField(event, "fieldNameAndFieldSpecs", fieldNameAndTypeMap);
-            setField(event, "eventDetails", eventDetails);
         }
 
         private Pair<Pair<Class<?>, Boolean>, Object> getProperty(JsonArray fieldData) {
-            try {
-                Class<?> dataType = Class.forName(fieldData.get(0).getAsString());
-                Boolean required = fieldData.get(1).getAsBoolean();
-                Pair<Class<?>, Boolean> typeAndRequired = new Pair<>(dataType, required);
-
-                Gson gson = new GsonBuilder().setPrettyPrinting().create();
-                String valueJson = fieldData.get(2).getAsString();
-                Object value = gson.fromJson(valueJson, dataType);
-
-                return new Pair<>(typeAndRequired, value);
-            } catch (ClassNotFoundException e) {
-                e.printStackTrace();
-                return null;
-            }
-        }
+            FieldCodecRegistry codecs = FieldCodecRegistry.getInstance();
+            FieldCodec<?> codec = codecs.getCodec(fieldData.get(0).getAsString());
+            Boolean required = fieldData.get(1).getAsBoolean();
+            Pair<Class<?>, Boolean> typeAndRequired = new Pair<>(codec.getDataType(), required);
 
-        private <T> void setField(Event event, String fieldName, T value) {
-            try {
-                Field field = Event.class.getDeclaredField(fieldName);
-                boolean accessible = field.isAccessible();
-                field.setAccessible(true);
-                field.set(event, value);
-                field.setAccessible(accessible);
-            } catch (NoSuchFieldException | IllegalAccessException e) {
-                e.printStackTrace();
-            }
+            JsonElement valueJson = jsonParser.parse(fieldData.get(2).getAsString());
+            Object value = codecs.decode(codec, valueJson);
+
+            return new Pair<>(typeAndRequired, value);
         }
     }
 
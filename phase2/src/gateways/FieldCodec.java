@@ -0,0 +1,26 @@
+package gateways;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Encodes & decodes the values of event fields of a single data type into & from json.
+ * @param <T> Data type of the field values.
+ */
+public interface FieldCodec<T> {
+    /**
+     * @return The class object of the data type this codec handles.
+     */
+    Class<T> getDataType();
+
+    /**
+     * @param value A non-null field value.
+     * @return The value encoded as json.
+     */
+    JsonElement encode(T value);
+
+    /**
+     * @param json A non-null json value.
+     * @return The decoded field value.
+     */
+    T decode(JsonElement json);
+}
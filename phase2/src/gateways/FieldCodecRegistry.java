@@ -0,0 +1,202 @@
+package gateways;
+
+import com.google.gson.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton class that holds one FieldCodec per field data type. Codecs are looked up by class name, and each class
+ * name is only resolved once, so reading & writing field values needs no reflection.
+ */
+public class FieldCodecRegistry {
+    private static FieldCodecRegistry instance;
+
+    private final Map<String, FieldCodec<?>> codecs = new ConcurrentHashMap<>();
+    private final Gson fallbackGson = GatewayUtility.getInstance().getSimpleGsonBuilder().create();
+
+    private FieldCodecRegistry() {
+        register(new StringCodec());
+        register(new IntegerCodec());
+        register(new BooleanCodec());
+        register(new LocalDateTimeCodec());
+    }
+
+    public static synchronized FieldCodecRegistry getInstance() {
+        if (instance == null)
+            instance = new FieldCodecRegistry();
+        return instance;
+    }
+
+    /**
+     * Registers a codec for its data type, replacing any codec previously registered for that type.
+     * @param codec The codec to be registered.
+     */
+    public void register(FieldCodec<?> codec) {
+        codecs.put(codec.getDataType().getName(), codec);
+    }
+
+    /**
+     * Returns the codec for the data type with the given class name. If no codec was registered for it, a codec that
+     * uses Gson is created the first time the class name is seen.
+     * @param className Fully qualified name of the data type.
+     * @return Codec of the data type.
+     */
+    public FieldCodec<?> getCodec(String className) {
+        return codecs.computeIfAbsent(className, this::createFallbackCodec);
+    }
+
+    /**
+     * @param dataType The data type.
+     * @return Codec of the data type.
+     */
+    public FieldCodec<?> getCodec(Class<?> dataType) {
+        return getCodec(dataType.getName());
+    }
+
+    /**
+     * @param dataType Data type of the value.
+     * @param value A field value, may be null.
+     * @return The value encoded as json.
+     */
+    public JsonElement encode(Class<?> dataType, Object value) {
+        if (value == null)
+            return JsonNull.INSTANCE;
+        return encode(getCodec(dataType), value);
+    }
+
+    private <T> JsonElement encode(FieldCodec<T> codec, Object value) {
+        return codec.encode(codec.getDataType().cast(value));
+    }
+
+    /**
+     * @param codec Codec of the value's data type.
+     * @param json A json value, may be json null.
+     * @return The decoded field value, or null.
+     */
+    public Object decode(FieldCodec<?> codec, JsonElement json) {
+        if (json == null || json.isJsonNull())
+            return null;
+        return codec.decode(json);
+    }
+
+    private FieldCodec<?> createFallbackCodec(String className) {
+        try {
+            return new GsonCodec<>(Class.forName(className), fallbackGson);
+        } catch (ClassNotFoundException e) {
+            throw new JsonParseException("Unknown field data type " + className, e);
+        }
+    }
+
+    private static class StringCodec implements FieldCodec<String> {
+        @Override
+        public Class<String> getDataType() {
+            return String.class;
+        }
+
+        @Override
+        public JsonElement encode(String value) {
+            return new JsonPrimitive(value);
+        }
+
+        @Override
+        public String decode(JsonElement json) {
+            return json.getAsString();
+        }
+    }
+
+    private static class IntegerCodec implements FieldCodec<Integer> {
+        @Override
+        public Class<Integer> getDataType() {
+            return Integer.class;
+        }
+
+        @Override
+        public JsonElement encode(Integer value) {
+            return new JsonPrimitive(value);
+        }
+
+        @Override
+        public Integer decode(JsonElement json) {
+            return json.getAsInt();
+        }
+    }
+
+    private static class BooleanCodec implements FieldCodec<Boolean> {
+        @Override
+        public Class<Boolean> getDataType() {
+            return Boolean.class;
+        }
+
+        @Override
+        public JsonElement encode(Boolean value) {
+            return new JsonPrimitive(value);
+        }
+
+        @Override
+        public Boolean decode(JsonElement json) {
+            return json.getAsBoolean();
+        }
+    }
+
+    /**
+     * Encodes LocalDateTime values as ISO-8601 strings. Also decodes the {"date": {...}, "time": {...}} objects that
+     * older event files contain.
+     */
+    private static class LocalDateTimeCodec implements FieldCodec<LocalDateTime> {
+        @Override
+        public Class<LocalDateTime> getDataType() {
+            return LocalDateTime.class;
+        }
+
+        @Override
+        public JsonElement encode(LocalDateTime value) {
+            return new JsonPrimitive(value.toString());
+        }
+
+        @Override
+        public LocalDateTime decode(JsonElement json) {
+            if (json.isJsonPrimitive())
+                return LocalDateTime.parse(json.getAsString());
+
+            JsonObject date = json.getAsJsonObject().getAsJsonObject("date");
+            JsonObject time = json.getAsJsonObject().getAsJsonObject("time");
+            return LocalDateTime.of(
+                    LocalDate.of(date.get("year").getAsInt(), date.get("month").getAsInt(), date.get("day").getAsInt()),
+                    LocalTime.of(time.get("hour").getAsInt(), time.get("minute").getAsInt(),
+                            time.get("second").getAsInt(), time.get("nano").getAsInt()));
+        }
+    }
+
+    /**
+     * Codec for data types without a dedicated codec. Uses a single shared Gson instance.
+     * @param <T> Data type of the field values.
+     */
+    private static class GsonCodec<T> implements FieldCodec<T> {
+        private final Class<T> dataType;
+        private final Gson gson;
+
+        public GsonCodec(Class<T> dataType, Gson gson) {
+            this.dataType = dataType;
+            this.gson = gson;
+        }
+
+        @Override
+        public Class<T> getDataType() {
+            return dataType;
+        }
+
+        @Override
+        public JsonElement encode(T value) {
+            return gson.toJsonTree(value, dataType);
+        }
+
+        @Override
+        public T decode(JsonElement json) {
+            return gson.fromJson(json, dataType);
+        }
+    }
+}
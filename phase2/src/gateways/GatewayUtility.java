@@ -13,7 +13,7 @@ public class GatewayUtility {
 
     private GatewayUtility() {}
 
-    public static GatewayUtility getInstance() {
+    public static synchronized GatewayUtility getInstance() {
         if (instance == null)
             instance = new GatewayUtility();
         return instance;
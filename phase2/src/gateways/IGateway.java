@@ -2,8 +2,10 @@ package gateways;
 
 import utility.Savable;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Gateway that saves & reads elements to & from files.
@@ -20,6 +22,14 @@ public interface IGateway <T extends Savable> {
      */
     Map<String, T> getElementMap();
 
+    /**
+     * Passes each element (read from json) to the consumer. If the elements haven't been read yet, they are read one
+     * at a time and each one is passed to the consumer as soon as it is read, so callers can build their own indexes
+     * while the file is loading.
+     * @param consumer Consumer that receives each element.
+     */
+    void forEachElement(Consumer<T> consumer);
+
     /**
      * Saves updated version of all elements, and overrides the previous saved elements. Writes the saved versions to
      * the file.
@@ -34,4 +44,48 @@ public interface IGateway <T extends Savable> {
      *                 element.
      */
     void saveAllElements(Map<String, T> elements);
+
+    /**
+     * Marks a new element as created, so that it is written on the next call to saveChanges.
+     * @param element The new element.
+     */
+    void markCreated(T element);
+
+    /**
+     * Marks the element with the given id as updated, so that it is written on the next call to saveChanges.
+     * @param id Id of the updated element.
+     */
+    void markUpdated(String id);
+
+    /**
+     * Marks the elements with the given ids as updated, as one change. In write-ahead mode they are written to the
+     * journal together, rather than one record per element.
+     * @param ids Ids of the updated elements.
+     */
+    default void markUpdated(Collection<String> ids) {
+        for (String id: ids)
+            markUpdated(id);
+    }
+
+    /**
+     * Marks the element with the given id as deleted, so that it is removed on the next call to saveChanges.
+     * @param id Id of the deleted element.
+     */
+    void markDeleted(String id);
+
+    /**
+     * Marks the elements with the given ids as deleted, as one change. In write-ahead mode they are written to the
+     * journal together, rather than one record per element.
+     * @param ids Ids of the deleted elements.
+     */
+    default void markDeleted(Collection<String> ids) {
+        for (String id: ids)
+            markDeleted(id);
+    }
+
+    /**
+     * Saves only the elements that were marked as created, updated or deleted since the last save. The cost of this
+     * is proportional to the number of changes rather than the number of elements.
+     */
+    void saveChanges();
 }
@@ -0,0 +1,173 @@
+package gateways;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only journal of changes made to the elements of a gateway. Each line of the journal file is a single json
+ * record, so a record is either fully written or (if the program stopped mid-write) cut off the end of the file when the
+ * journal is read.
+ */
+class Journal {
+    private final File file;
+    // Holds the records that are being folded into the json file while new records are appended to file.
+    private final File rotatedFile;
+
+    /**
+     * Constructs a Journal.
+     * @param path Path of the journal file.
+     */
+    Journal(String path) {
+        this.file = new File(path);
+        this.rotatedFile = new File(path + ".old");
+    }
+
+    /**
+     * Appends a record to the end of the journal & forces it to disk.
+     * @param record Json record to be appended.
+     * @throws IOException If the record could not be written.
+     */
+    void append(JsonObject record) throws IOException {
+        byte[] line = (record.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        try (FileOutputStream outputStream = new FileOutputStream(file, true)) {
+            outputStream.write(line);
+            outputStream.getChannel().force(false);
+        }
+    }
+
+    /**
+     * @return Records in the journal, in the order they were appended. A trailing record that was only partially
+     * written is removed from the file, so the next record appended starts on a line of its own.
+     */
+    List<JsonObject> readRecords() {
+        List<JsonObject> records = new ArrayList<>();
+        readRecords(rotatedFile, records);
+        readRecords(file, records);
+        return records;
+    }
+
+    private void readRecords(File file, List<JsonObject> records) {
+        if (!file.exists())
+            return;
+
+        try {
+            truncateIncompleteRecord(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty())
+                    continue;
+                try {
+                    records.add(new JsonParser().parse(line).getAsJsonObject());
+                } catch (JsonParseException | IllegalStateException e) {
+                    System.err.println("Skipping unreadable journal record in " + file.getPath());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Cuts the file after its last complete line, dropping a record that was only partially written.
+     * @param file A journal file.
+     * @throws IOException If the file could not be read or truncated.
+     */
+    private static void truncateIncompleteRecord(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            byte[] buffer = new byte[4096];
+            long end = randomAccessFile.length();
+            // Searches backwards from the end of the file for the newline that ends the last complete record.
+            long position = end;
+            while (position > 0) {
+                int length = (int) Math.min(buffer.length, position);
+                position -= length;
+                randomAccessFile.seek(position);
+                randomAccessFile.readFully(buffer, 0, length);
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer[i] == '\n') {
+                        truncate(randomAccessFile, file, position + i + 1, end);
+                        return;
+                    }
+                }
+            }
+            truncate(randomAccessFile, file, 0, end);
+        }
+    }
+
+    private static void truncate(RandomAccessFile randomAccessFile, File file, long length, long end)
+            throws IOException {
+        if (length == end)
+            return;
+        System.err.println("Discarding incomplete journal record at the end of " + file.getPath());
+        randomAccessFile.setLength(length);
+        randomAccessFile.getChannel().force(false);
+    }
+
+    /**
+     * @return Whether the journal has any records, including records that have been rotated out.
+     */
+    boolean exists() {
+        return file.exists() || rotatedFile.exists();
+    }
+
+    /**
+     * @return Size of the journal file in bytes. Records that have been rotated out are not counted.
+     */
+    long size() {
+        return file.length();
+    }
+
+    /**
+     * Moves the current records aside, so that new records are appended to an empty journal. The moved records are
+     * still read by readRecords until clearRotated is called.
+     * @throws IOException If the records could not be moved.
+     */
+    void rotate() throws IOException {
+        if (!file.exists())
+            return;
+        if (!rotatedFile.exists()) {
+            Files.move(file.toPath(), rotatedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return;
+        }
+
+        // Records left over from an earlier rotation come first, so the current records are added after them.
+        try (FileOutputStream outputStream = new FileOutputStream(rotatedFile, true)) {
+            Files.copy(file.toPath(), outputStream);
+            outputStream.getChannel().force(false);
+        }
+        delete(file);
+    }
+
+    /**
+     * Removes the records that were moved aside by rotate.
+     */
+    void clearRotated() {
+        delete(rotatedFile);
+    }
+
+    /**
+     * Removes every record from the journal.
+     */
+    void clear() {
+        delete(file);
+        delete(rotatedFile);
+    }
+
+    private void delete(File file) {
+        if (file.exists() && !file.delete())
+            System.err.println("Could not clear journal " + file.getPath());
+    }
+}
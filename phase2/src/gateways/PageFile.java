@@ -0,0 +1,323 @@
+package gateways;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Log-structured file of records, laid out in pages of PAGE_SIZE bytes. Every put or delete of an id appends a record
+ * to the end of the file, and an in-memory index sorted by id keeps the position of the latest record of each id, so
+ * a single record can be read or written without touching the rest of the file.
+ * A record that fits in a page never crosses a page boundary, so reading it touches a single page. Each record carries
+ * a checksum, & a record at the end of the file that was only partially written is cut off when the file is opened.
+ * Records that have been replaced or deleted stay in the file until it is compacted.
+ */
+class PageFile {
+    static final int PAGE_SIZE = 4096;
+    // Payload length (int), checksum (int) & kind (byte).
+    private static final int HEADER_SIZE = 9;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private final Path path;
+    private FileChannel channel;
+    private final TreeMap<String, RecordLocation> index = new TreeMap<>();
+    private long end;
+    private long liveBytes;
+
+    /**
+     * Constructs a PageFile. The file is only read once open is called.
+     * @param path Path of the file.
+     */
+    PageFile(String path) {
+        this.path = Paths.get(path);
+    }
+
+    /**
+     * @return Whether the file exists.
+     */
+    boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Opens the file, creating it if needed, and indexes its records.
+     * @throws IOException If the file could not be opened or read.
+     */
+    void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        scan();
+    }
+
+    /**
+     * Reads every record from the start of the file, keeping the position of the latest record of each id. Reading
+     * stops at the first record that is incomplete or fails its checksum, and the file is cut off there.
+     */
+    private void scan() throws IOException {
+        index.clear();
+        liveBytes = 0;
+        long fileSize = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position < fileSize) {
+            int room = PAGE_SIZE - (int) (position % PAGE_SIZE);
+            if (room < HEADER_SIZE) {
+                position += room;
+                continue;
+            }
+            if (position + HEADER_SIZE > fileSize)
+                break;
+
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            byte kind = header.get();
+            if (length == 0) {
+                // The rest of the page is padding.
+                position += room;
+                continue;
+            }
+            if (length < 0 || position + HEADER_SIZE + length > fileSize)
+                break;
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + HEADER_SIZE);
+            if (checksum(kind, payload.array()) != checksum)
+                break;
+
+            String id = new DataInputStream(new ByteArrayInputStream(payload.array())).readUTF();
+            removeFromIndex(id);
+            if (kind == PUT) {
+                index.put(id, new RecordLocation(position, HEADER_SIZE + length));
+                liveBytes += HEADER_SIZE + length;
+            }
+            position += HEADER_SIZE + length;
+        }
+
+        if (position < fileSize) {
+            System.err.println("Discarding incomplete records at the end of " + path);
+            channel.truncate(position);
+        }
+        end = position;
+    }
+
+    /**
+     * @param id Id of a record.
+     * @return Whether a record with the id is in the file.
+     */
+    boolean contains(String id) {
+        return index.containsKey(id);
+    }
+
+    /**
+     * @return Ids of every record in the file, in the order their records appear in the file.
+     */
+    List<String> getIdsInFileOrder() {
+        List<Map.Entry<String, RecordLocation>> entries = new ArrayList<>(index.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().offset));
+        List<String> ids = new ArrayList<>();
+        for (Map.Entry<String, RecordLocation> entry: entries)
+            ids.add(entry.getKey());
+        return ids;
+    }
+
+    /**
+     * @param fromId Lowest id in the range.
+     * @param toId Id that the range ends before.
+     * @return Ids of the records in the range, in ascending order.
+     */
+    List<String> getIdsInRange(String fromId, String toId) {
+        return new ArrayList<>(index.subMap(fromId, true, toId, false).keySet());
+    }
+
+    /**
+     * @param id Id of a record.
+     * @return The data of the latest record of the id, or null if there is none.
+     * @throws IOException If the record could not be read.
+     */
+    byte[] read(String id) throws IOException {
+        RecordLocation location = index.get(id);
+        if (location == null)
+            return null;
+
+        ByteBuffer record = ByteBuffer.allocate(location.length);
+        readFully(record, location.offset);
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(record.array(), HEADER_SIZE,
+                location.length - HEADER_SIZE));
+        input.readUTF();
+        byte[] data = new byte[input.available()];
+        input.readFully(data);
+        return data;
+    }
+
+    /**
+     * Appends a record that replaces the data of the id. The record is only durable once sync is called.
+     * @param id Id of the record.
+     * @param data The new data of the id.
+     * @throws IOException If the record could not be written.
+     */
+    void put(String id, byte[] data) throws IOException {
+        long offset = append(PUT, id, data);
+        removeFromIndex(id);
+        RecordLocation location = new RecordLocation(offset, (int) (end - offset));
+        index.put(id, location);
+        liveBytes += location.length;
+    }
+
+    /**
+     * Appends a record that deletes the id. The record is only durable once sync is called.
+     * @param id Id of the deleted record.
+     * @throws IOException If the record could not be written.
+     */
+    void delete(String id) throws IOException {
+        if (!index.containsKey(id))
+            return;
+        append(DELETE, id, new byte[0]);
+        removeFromIndex(id);
+    }
+
+    /**
+     * Forces every appended record to disk.
+     * @throws IOException If the records could not be forced to disk.
+     */
+    void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * @return Size of the file in bytes.
+     */
+    long size() {
+        return end;
+    }
+
+    /**
+     * @return Bytes taken up by the latest record of each id.
+     */
+    long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Rewrites the file with only the latest record of each id, dropping replaced & deleted records.
+     * @throws IOException If the file could not be rewritten. The existing file is kept in that case.
+     */
+    void compact() throws IOException {
+        rewrite(getIdsInFileOrder(), id -> {
+            try {
+                return read(id);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Replaces every record in the file, creating the file if it doesn't exist. The file is opened afterwards.
+     * @param ids Ids of the new records, in the order they should be written.
+     * @param dataForId Function that returns the data of each id.
+     * @throws IOException If the file could not be rewritten. The existing file is kept in that case.
+     */
+    void rewrite(List<String> ids, Function<String, byte[]> dataForId) throws IOException {
+        Path tempPath = Paths.get(path + ".tmp");
+        PageFile rewritten = new PageFile(tempPath.toString());
+        try {
+            Files.deleteIfExists(tempPath);
+            rewritten.open();
+            for (String id: ids)
+                rewritten.put(id, dataForId.apply(id));
+            rewritten.sync();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            rewritten.close();
+        }
+
+        close();
+        Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        open();
+    }
+
+    /**
+     * Closes the file.
+     * @throws IOException If the file could not be closed.
+     */
+    void close() throws IOException {
+        if (channel != null)
+            channel.close();
+    }
+
+    /**
+     * Writes a record at the end of the file. A record that fits in a page but not in the rest of the current page
+     * starts at the next page, & so does a record larger than a page.
+     * @return Position of the record.
+     */
+    private long append(byte kind, String id, byte[] data) throws IOException {
+        ByteArrayOutputStream payloadStream = new ByteArrayOutputStream(data.length + id.length() + 2);
+        DataOutputStream output = new DataOutputStream(payloadStream);
+        output.writeUTF(id);
+        output.write(data);
+        byte[] payload = payloadStream.toByteArray();
+
+        int recordSize = HEADER_SIZE + payload.length;
+        int room = PAGE_SIZE - (int) (end % PAGE_SIZE);
+        if (room < PAGE_SIZE && recordSize > room)
+            end += room;
+
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        record.putInt(payload.length);
+        record.putInt(checksum(kind, payload));
+        record.put(kind);
+        record.put(payload);
+        record.flip();
+
+        long offset = end;
+        while (record.hasRemaining())
+            channel.write(record, offset + record.position());
+        end = offset + recordSize;
+        return offset;
+    }
+
+    private void removeFromIndex(String id) {
+        RecordLocation location = index.remove(id);
+        if (location != null)
+            liveBytes -= location.length;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Unexpected end of " + path);
+        }
+    }
+
+    private static int checksum(byte kind, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(kind);
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Position & size of a record in the file.
+     */
+    private static class RecordLocation {
+        private final long offset;
+        private final int length;
+
+        public RecordLocation(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
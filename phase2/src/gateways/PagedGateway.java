@@ -0,0 +1,232 @@
+package gateways;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import utility.Savable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Gateway that stores each element as its own record in a PageFile, instead of in one json file.
+ * Saving appends a record for each changed element, so a change is never written by rewriting the whole file, and a
+ * single element can be looked up by id without reading the others. The file is compacted once more than half of it is
+ * taken up by replaced or deleted records.
+ * Elements are encoded in the same json as the json gateway given to the constructor. If the page file doesn't exist
+ * yet, it is created from the elements of that json gateway, which is left as it is.
+ * @param <T> Entity type.
+ */
+public class PagedGateway<T extends Savable> implements IGateway<T> {
+    private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    private final EntityGateway<T> jsonGateway;
+    private final Class<T> dataType;
+    private final Gson gson;
+    private final PageFile pageFile;
+    private boolean opened;
+    private boolean allRead;
+    // Elements that have been read or created, by id.
+    private final Map<String, T> elements = new HashMap<>();
+    private final Set<String> updatedIds = new LinkedHashSet<>();
+    private final Set<String> deletedIds = new LinkedHashSet<>();
+
+    /**
+     * Constructs a PagedGateway. The page file is opened the first time an element is requested.
+     * @param jsonGateway Gateway whose json encoding is used for the elements, & whose elements are copied into a new
+     *                    page file.
+     * @param path Path of the page file.
+     */
+    public PagedGateway(EntityGateway<T> jsonGateway, String path) {
+        this.jsonGateway = jsonGateway;
+        this.dataType = jsonGateway.getDataType();
+        this.gson = jsonGateway.getGson();
+        this.pageFile = new PageFile(path);
+    }
+
+    @Override
+    public synchronized List<T> getAllElements() {
+        List<T> allElements = new ArrayList<>();
+        forEachElement(allElements::add);
+        return allElements;
+    }
+
+    @Override
+    public synchronized Map<String, T> getElementMap() {
+        Map<String, T> elementMap = new HashMap<>();
+        forEachElement(element -> elementMap.put(element.getID(), element));
+        return elementMap;
+    }
+
+    /**
+     * Passes each element to the consumer, in the order their records appear in the page file. Elements created since
+     * the last save come last.
+     * @param consumer Consumer that receives each element.
+     */
+    @Override
+    public synchronized void forEachElement(Consumer<T> consumer) {
+        open();
+        for (String id: pageFile.getIdsInFileOrder()) {
+            T element = getElement(id);
+            if (element != null)
+                consumer.accept(element);
+        }
+        for (String id: updatedIds) {
+            if (!pageFile.contains(id))
+                consumer.accept(elements.get(id));
+        }
+        allRead = true;
+    }
+
+    /**
+     * @param id Id of an element.
+     * @return The element with the id, or null if there is none. Only the record of that element is read.
+     */
+    public synchronized T getElement(String id) {
+        open();
+        if (deletedIds.contains(id))
+            return null;
+        T element = elements.get(id);
+        if (element == null && !allRead && pageFile.contains(id)) {
+            element = readElement(id);
+            if (element != null)
+                elements.put(id, element);
+        }
+        return element;
+    }
+
+    /**
+     * @param fromId Lowest id in the range.
+     * @param toId Id that the range ends before.
+     * @return The elements with ids in the range, in ascending order of id. Only the records of those elements are
+     * read.
+     */
+    public synchronized List<T> getElementsInRange(String fromId, String toId) {
+        open();
+        SortedSet<String> ids = new TreeSet<>(pageFile.getIdsInRange(fromId, toId));
+        for (String id: updatedIds) {
+            if (id.compareTo(fromId) >= 0 && id.compareTo(toId) < 0)
+                ids.add(id);
+        }
+
+        List<T> rangeElements = new ArrayList<>();
+        for (String id: ids) {
+            T element = getElement(id);
+            if (element != null)
+                rangeElements.add(element);
+        }
+        return rangeElements;
+    }
+
+    @Override
+    public synchronized void saveAllElements(List<T> elements) {
+        open();
+        this.elements.clear();
+        List<String> ids = new ArrayList<>();
+        for (T element: elements) {
+            this.elements.put(element.getID(), element);
+            ids.add(element.getID());
+        }
+        updatedIds.clear();
+        deletedIds.clear();
+        allRead = true;
+
+        try {
+            pageFile.rewrite(ids, id -> encode(this.elements.get(id)));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void saveAllElements(Map<String, T> elements) {
+        saveAllElements(new ArrayList<>(elements.values()));
+    }
+
+    @Override
+    public synchronized void markCreated(T element) {
+        open();
+        elements.put(element.getID(), element);
+        deletedIds.remove(element.getID());
+        updatedIds.add(element.getID());
+    }
+
+    @Override
+    public synchronized void markUpdated(String id) {
+        if (getElement(id) != null)
+            updatedIds.add(id);
+    }
+
+    @Override
+    public synchronized void markDeleted(String id) {
+        open();
+        elements.remove(id);
+        updatedIds.remove(id);
+        deletedIds.add(id);
+    }
+
+    /**
+     * Appends a record for every element marked as created, updated or deleted since the last save, and forces the
+     * records to disk together. If the records could not be written, the changes stay marked.
+     */
+    @Override
+    public synchronized void saveChanges() {
+        if (updatedIds.isEmpty() && deletedIds.isEmpty())
+            return;
+
+        try {
+            for (String id: updatedIds)
+                pageFile.put(id, encode(elements.get(id)));
+            for (String id: deletedIds)
+                pageFile.delete(id);
+            pageFile.sync();
+            updatedIds.clear();
+            deletedIds.clear();
+
+            if (pageFile.size() > MIN_COMPACTION_SIZE && pageFile.size() > 2 * pageFile.getLiveBytes())
+                pageFile.compact();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Opens the page file, unless it is already open. A page file that doesn't exist yet is filled with the elements
+     * of the json gateway.
+     */
+    private void open() {
+        if (opened)
+            return;
+        opened = true;
+
+        try {
+            if (pageFile.exists()) {
+                pageFile.open();
+                return;
+            }
+            // The page file only appears once every element has been written to it, so an interrupted copy is redone.
+            Map<String, T> jsonElements = new LinkedHashMap<>();
+            jsonGateway.forEachElement(element -> jsonElements.put(element.getID(), element));
+            pageFile.rewrite(new ArrayList<>(jsonElements.keySet()), id -> encode(jsonElements.get(id)));
+            elements.putAll(jsonElements);
+            allRead = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private T readElement(String id) {
+        try {
+            byte[] data = pageFile.read(id);
+            return data == null ? null : gson.fromJson(new String(data, StandardCharsets.UTF_8), dataType);
+        } catch (IOException | JsonParseException e) {
+            System.err.println("Could not read element " + id + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] encode(T element) {
+        return gson.toJson(element, dataType).getBytes(StandardCharsets.UTF_8);
+    }
+}
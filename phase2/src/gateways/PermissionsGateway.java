@@ -7,9 +7,9 @@ import entities.User;
 import entities.Permissions;
 import utility.*;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Gateway that saves & reads Permissions objects to & from a json file.
@@ -56,27 +56,22 @@ public class PermissionsGateway extends EntityGateway<Permissions> {
      * @param <T> The generic type of ViewType.
      */
     private static class ViewTypeDeserializer<T extends Viewable> implements JsonDeserializer<ViewType<T>> {
-        private final Class<? extends ViewType<T>> viewTypeClass;
+        private final Map<String, ViewType<T>> viewTypesByName = new HashMap<>();
 
         public ViewTypeDeserializer(Class<? extends ViewType<T>> viewTypeClass) {
-            this.viewTypeClass = viewTypeClass;
+            assert viewTypeClass.isEnum();
+            // Enum constants are looked up once here, instead of calling valueOf reflectively for every value.
+            for (ViewType<T> viewType: viewTypeClass.getEnumConstants())
+                viewTypesByName.put(viewType.toString(), viewType);
         }
 
         @Override
         public ViewType<T> deserialize(JsonElement jsonElement, Type type, JsonDeserializationContext jsonDeserializationContext) throws JsonParseException {
             String viewTypeName = jsonElement.getAsString();
-            return getEnumValue(viewTypeName);
-        }
-
-        private ViewType<T> getEnumValue(String name) {
-            assert viewTypeClass.isEnum();
-            try {
-                Method method = viewTypeClass.getMethod("valueOf", String.class);
-                return (ViewType<T>) method.invoke(null, name);
-            } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-                e.printStackTrace();
-                return null;
-            }
+            ViewType<T> viewType = viewTypesByName.get(viewTypeName);
+            if (viewType == null)
+                System.err.println("Unknown view type " + viewTypeName);
+            return viewType;
         }
     }
 }
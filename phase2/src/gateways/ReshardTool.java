@@ -0,0 +1,100 @@
+package gateways;
+
+import utility.Savable;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Command line tool that moves the saved events or users from one number of shards to another.
+ * Usage: ReshardTool (events|users) dataDirectory currentShardCount newShardCount
+ * The program shouldn't be running while the data is resharded.
+ */
+public class ReshardTool {
+    // Directory in the data directory that the new shards are written to before they replace the existing ones.
+    private static final String STAGING_DIRECTORY = "reshard";
+
+    public static void main(String[] args) {
+        if (args.length != 4) {
+            System.err.println("Usage: ReshardTool (events|users) dataDirectory currentShardCount newShardCount");
+            return;
+        }
+
+        int currentShardCount;
+        int newShardCount;
+        try {
+            currentShardCount = Integer.parseInt(args[2]);
+            newShardCount = Integer.parseInt(args[3]);
+        } catch (NumberFormatException e) {
+            System.err.println("Shard counts must be whole numbers.");
+            return;
+        }
+        if (currentShardCount < 1 || newShardCount < 1) {
+            System.err.println("Shard counts must be at least 1.");
+            return;
+        }
+
+        if (!args[0].equals("events") && !args[0].equals("users")) {
+            System.err.println("Unknown entity type " + args[0] + ", expected events or users.");
+            return;
+        }
+        File stagingDirectory = new File(args[1], STAGING_DIRECTORY);
+        if (!stagingDirectory.isDirectory() && !stagingDirectory.mkdirs()) {
+            System.err.println("Could not create " + stagingDirectory + ", nothing was changed.");
+            return;
+        }
+
+        String path = args[1] + File.separator + args[0] + ".json";
+        String stagingPath = stagingDirectory.getPath() + File.separator + args[0] + ".json";
+        if (args[0].equals("events")) {
+            reshard(new EventGateway(path, false, currentShardCount),
+                    new EventGateway(stagingPath, false, newShardCount), path);
+        } else {
+            reshard(new UserGateway(path, false, currentShardCount),
+                    new UserGateway(stagingPath, false, newShardCount), path);
+        }
+        // Only removed if it is empty, i.e. unless new shards were left in it.
+        stagingDirectory.delete();
+    }
+
+    /**
+     * Writes every element of the source gateway to the staged gateway, and once every staged shard has been written
+     * moves the staged shards to the path of the source gateway & removes the files of the source gateway that they
+     * don't replace. The new shards usually have the same file names as some of the existing ones, so the existing
+     * files are only replaced after all of the new shards have been written: if any of them couldn't be written, the
+     * existing files are left as they were. Before anything is staged the journals of the source gateway are folded
+     * into its json files, so replacing a json file never leaves behind a journal that belongs to the old shard.
+     * @param source Gateway that the elements are currently saved in.
+     * @param staged Gateway with the new number of shards, in a directory of its own.
+     * @param path Path of the json file of the source gateway, which the new shards are moved to.
+     * @param <T> Entity type.
+     */
+    public static <T extends Savable> void reshard(EntityGateway<T> source, EntityGateway<T> staged, String path) {
+        long startTime = System.currentTimeMillis();
+        List<T> elements = source.getAllElements();
+        if (!source.compactAll()) {
+            System.err.println("Could not fold the journals into the existing shards, the existing files were kept.");
+            return;
+        }
+        if (!staged.writeAllElements(elements)) {
+            staged.removeShardsExcept(Collections.<String>emptySet());
+            System.err.println("Could not write the new shards, the existing files were kept.");
+            return;
+        }
+
+        Set<String> newPaths = new HashSet<>();
+        for (int i = 0; i < staged.getShardCount(); i++)
+            newPaths.add(EntityGateway.getShardPath(path, i, staged.getShardCount()));
+        if (!staged.moveShardsTo(path)) {
+            System.err.println("Could not move all of the new shards into place. Move the files left in the " +
+                    STAGING_DIRECTORY + " directory next to " + path + " by hand before the data is used again.");
+            return;
+        }
+        source.removeShardsExcept(newPaths);
+        System.out.println("Moved " + elements.size() + " elements from " + source.getShardCount() + " to " +
+                staged.getShardCount() + " shards in " + (System.currentTimeMillis() - startTime) + " ms.");
+    }
+}
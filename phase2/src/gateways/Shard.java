@@ -0,0 +1,425 @@
+package gateways;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import utility.Savable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * One json file of an EntityGateway, together with its journal & the elements stored in it.
+ * Changes marked on the shard are saved to the journal next to the json file, and the journal is folded back into the
+ * json file once it grows past COMPACTION_THRESHOLD bytes. Only shards with saved changes are ever rewritten.
+ * The json file is never written in place: it is written to a temporary file which then replaces the json file, so a
+ * crash during a write leaves the previous version of the file intact.
+ * @param <T> Entity type.
+ */
+class Shard<T extends Savable> {
+    private static final long COMPACTION_THRESHOLD = 4 * 1024 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final EntityGateway<T> gateway;
+    private final Class<T> dataType;
+    private final String path;
+    private final Journal journal;
+    private final boolean writeAhead;
+    private Map<String, T> elements;
+    private final Set<String> updatedIds = new LinkedHashSet<>();
+    private final Set<String> deletedIds = new LinkedHashSet<>();
+    // Whether the json file is in an older format, & should be rewritten the next time changes are saved.
+    private boolean outdatedFormat;
+
+    private boolean compacting;
+    // Snapshots are numbered so that an older snapshot never overwrites a newer one in the json file.
+    private long snapshotCount;
+    private long writtenSnapshot = -1;
+    private final Object writeLock = new Object();
+
+    /**
+     * Constructs a Shard. The json file is read the first time the elements are requested.
+     * @param gateway The gateway that the shard belongs to, which decides the format of the json file.
+     * @param dataType The class object of data type T.
+     * @param path Path of the json file.
+     * @param writeAhead Whether every marked change should be written to the journal as soon as it is marked.
+     */
+    Shard(EntityGateway<T> gateway, Class<T> dataType, String path, boolean writeAhead) {
+        this.gateway = gateway;
+        this.dataType = dataType;
+        this.path = path;
+        this.writeAhead = writeAhead;
+        journal = new Journal(path.replaceFirst("\\.json$", "") + ".journal");
+    }
+
+    /**
+     * @return Path of the json file.
+     */
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * @return Whether the json file or its journal exist.
+     */
+    boolean exists() {
+        return new File(path).exists() || journal.exists();
+    }
+
+    /**
+     * @return Whether the elements have been read.
+     */
+    synchronized boolean isLoaded() {
+        return elements != null;
+    }
+
+    /**
+     * Reads the elements if they haven't been read yet.
+     * @param elementListener Consumer that receives each element as soon as it is read, or null. It is only called if
+     *                        the elements are read by this call.
+     */
+    synchronized void load(Consumer<T> elementListener) {
+        if (elements == null)
+            readElements(elementListener);
+    }
+
+    /**
+     * Passes every element of the shard to the consumer, reading the elements first if needed.
+     * @param consumer Consumer that receives every element.
+     */
+    synchronized void forEachElement(Consumer<T> consumer) {
+        if (elements == null)
+            readElements(consumer);
+        else
+            elements.values().forEach(consumer);
+    }
+
+    synchronized void put(T element) {
+        load(null);
+        elements.put(element.getID(), element);
+        deletedIds.remove(element.getID());
+        updatedIds.add(element.getID());
+        if (writeAhead)
+            saveChanges();
+    }
+
+    synchronized void update(String id) {
+        load(null);
+        if (elements.containsKey(id))
+            updatedIds.add(id);
+        if (writeAhead)
+            saveChanges();
+    }
+
+    synchronized void delete(String id) {
+        load(null);
+        elements.remove(id);
+        updatedIds.remove(id);
+        deletedIds.add(id);
+        if (writeAhead)
+            saveChanges();
+    }
+
+    /**
+     * Marks several elements as updated. In write-ahead mode they are appended to the journal in a single record.
+     * @param ids Ids of the updated elements.
+     */
+    synchronized void update(Collection<String> ids) {
+        load(null);
+        for (String id: ids) {
+            if (elements.containsKey(id))
+                updatedIds.add(id);
+        }
+        if (writeAhead)
+            saveChanges();
+    }
+
+    /**
+     * Marks several elements as deleted. In write-ahead mode they are appended to the journal in a single record.
+     * @param ids Ids of the deleted elements.
+     */
+    synchronized void delete(Collection<String> ids) {
+        load(null);
+        for (String id: ids) {
+            elements.remove(id);
+            updatedIds.remove(id);
+            deletedIds.add(id);
+        }
+        if (writeAhead)
+            saveChanges();
+    }
+
+    /**
+     * Replaces every element of the shard & rewrites the json file. The replacement is marked as changes until the
+     * json file has been written, so if the write fails it is saved to the journal the next time changes are saved.
+     * @param elements The new elements of the shard.
+     * @return Whether the json file was written.
+     */
+    synchronized boolean saveAll(Collection<T> elements) {
+        load(null);
+        Map<String, T> newElements = new LinkedHashMap<>();
+        for (T element: elements)
+            newElements.put(element.getID(), element);
+        for (String id: this.elements.keySet()) {
+            if (!newElements.containsKey(id))
+                deletedIds.add(id);
+        }
+        this.elements = newElements;
+        deletedIds.removeAll(newElements.keySet());
+        updatedIds.addAll(newElements.keySet());
+        return compact();
+    }
+
+    /**
+     * Appends the changes marked since the last save to the journal. Nothing is written if no changes were marked,
+     * unless the json file is in an older format: the json file is then rewritten instead, & the changes are only
+     * appended to the journal if that fails.
+     */
+    synchronized void saveChanges() {
+        if (outdatedFormat && compact())
+            return;
+        if (updatedIds.isEmpty() && deletedIds.isEmpty())
+            return;
+
+        try {
+            journal.append(getChangeRecord());
+            updatedIds.clear();
+            deletedIds.clear();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        if (journal.size() > COMPACTION_THRESHOLD) {
+            if (writeAhead)
+                compactInBackground();
+            else
+                compact();
+        }
+    }
+
+    private JsonObject getChangeRecord() {
+        Gson gson = gateway.getGson();
+        JsonArray puts = new JsonArray();
+        for (String id: updatedIds)
+            puts.add(gson.toJsonTree(elements.get(id), dataType));
+        JsonArray deletes = new JsonArray();
+        for (String id: deletedIds)
+            deletes.add(id);
+
+        JsonObject record = new JsonObject();
+        record.add("put", puts);
+        record.add("delete", deletes);
+        return record;
+    }
+
+    /**
+     * Removes the json file & its journal. Used once the elements of the shard have been moved to other shards.
+     * The journal is only removed after the json file, so the journal is never left without the file it applies to.
+     * @return Whether the json file was removed.
+     */
+    synchronized boolean remove() {
+        File file = new File(path);
+        if (file.exists() && !file.delete())
+            return false;
+        journal.clear();
+        return true;
+    }
+
+    /**
+     * Writes every element to the json file & empties the journal, since the json file now contains its changes. If
+     * the json file could not be written, the journal & the changes marked since the last save are kept.
+     * @return Whether the json file was written.
+     */
+    synchronized boolean compact() {
+        boolean written = writeElements(new ArrayList<>(elements.values()), snapshotCount++) != null;
+        if (written) {
+            journal.clear();
+            outdatedFormat = false;
+            updatedIds.clear();
+            deletedIds.clear();
+        }
+        return written;
+    }
+
+    /**
+     * Starts folding the journal into the json file on the compactor thread of the gateway, unless that is already
+     * happening. The elements are serialized right away, while the shard is locked & by the thread that changes them,
+     * since the compactor thread must never read elements that may be changing. Only writing the serialized document
+     * to disk happens on the compactor thread. Records appended meanwhile go to a fresh journal, so marking changes is
+     * never blocked by the write.
+     */
+    private void compactInBackground() {
+        if (compacting)
+            return;
+
+        byte[] document;
+        try {
+            document = serializeElements(new ArrayList<>(elements.values()));
+        } catch (IOException | RuntimeException e) {
+            // The journal is kept as it is, & compaction is tried again the next time changes are saved.
+            System.err.println("Could not serialize " + path + " for compaction: " + e);
+            return;
+        }
+        long snapshotNumber = snapshotCount++;
+        try {
+            journal.rotate();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        compacting = true;
+        gateway.getCompactor().submit(() -> {
+            WriteResult result = null;
+            try {
+                result = writeFile(snapshotNumber, outputStream -> outputStream.write(document));
+            } finally {
+                synchronized (this) {
+                    if (result != null) {
+                        journal.clearRotated();
+                        outdatedFormat = false;
+                    }
+                    compacting = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Serializes elements in the format of the json file.
+     * @param snapshot The elements to be serialized.
+     * @return The json document, in UTF-8.
+     * @throws IOException If the elements could not be serialized.
+     */
+    private byte[] serializeElements(List<T> snapshot) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeDocument(outputStream, snapshot);
+        return outputStream.toByteArray();
+    }
+
+    private void writeDocument(OutputStream outputStream, List<T> snapshot) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
+                WRITE_BUFFER_SIZE);
+        JsonWriter jsonWriter = gateway.getGson().newJsonWriter(writer);
+        gateway.writeDocument(jsonWriter, snapshot);
+        jsonWriter.flush();
+    }
+
+    /**
+     * Streams the json file through the readDocument of the gateway, decoding one element at a time straight into the
+     * element map. This way the whole file is never held in memory as an array on top of the map. Changes in the
+     * journal are then applied on top of the elements from the file.
+     * @param elementListener Consumer that receives each element as soon as it is read, or null.
+     */
+    private void readElements(Consumer<T> elementListener) {
+        Map<String, T> journalPuts = new LinkedHashMap<>();
+        Set<String> journalDeletes = new HashSet<>();
+        readJournal(journalPuts, journalDeletes);
+
+        elements = new LinkedHashMap<>();
+        if (new File(path).exists()) {
+            try (JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(path),
+                    StandardCharsets.UTF_8)))) {
+                outdatedFormat = !gateway.readDocument(reader, element -> {
+                    String id = element.getID();
+                    if (!journalPuts.containsKey(id) && !journalDeletes.contains(id))
+                        addElement(element, elementListener);
+                });
+            } catch (IOException | JsonParseException e) {
+                // The elements read before the error are kept, so the gateway stays usable.
+                System.err.println("Could not read all elements from " + path + ": " + e.getMessage());
+            }
+        }
+
+        for (T element: journalPuts.values())
+            addElement(element, elementListener);
+    }
+
+    private void addElement(T element, Consumer<T> elementListener) {
+        elements.put(element.getID(), element);
+        if (elementListener != null)
+            elementListener.accept(element);
+    }
+
+    /**
+     * Replays the journal, collecting the final version of every element put in the journal & the ids of every
+     * element deleted in the journal.
+     * @param puts Map that the put elements are added to.
+     * @param deletes Set that the deleted ids are added to.
+     */
+    private void readJournal(Map<String, T> puts, Set<String> deletes) {
+        Gson gson = gateway.getGson();
+        for (JsonObject record: journal.readRecords()) {
+            for (JsonElement id: record.getAsJsonArray("delete")) {
+                puts.remove(id.getAsString());
+                deletes.add(id.getAsString());
+            }
+            for (JsonElement elementJson: record.getAsJsonArray("put")) {
+                T element = gson.fromJson(elementJson, dataType);
+                puts.put(element.getID(), element);
+                deletes.remove(element.getID());
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the elements to the json file, unless a newer snapshot has already been written.
+     * @param snapshot The elements to be written.
+     * @param snapshotNumber Number of the snapshot. Snapshots taken later have higher numbers.
+     * @return Statistics of the write, or null if nothing was written.
+     */
+    private WriteResult writeElements(List<T> snapshot, long snapshotNumber) {
+        return writeFile(snapshotNumber, outputStream -> writeDocument(outputStream, snapshot));
+    }
+
+    /**
+     * Writes the json file, unless a newer snapshot has already been written. The document is written through a buffer
+     * to a temporary file in the same directory, forced to disk, and then atomically moved over the json file.
+     * @param snapshotNumber Number of the snapshot the document was made from.
+     * @param document Writes the document to the stream it is given.
+     * @return Statistics of the write, or null if nothing was written.
+     */
+    private WriteResult writeFile(long snapshotNumber, DocumentWriter document) {
+        synchronized (writeLock) {
+            if (snapshotNumber < writtenSnapshot)
+                return null;
+
+            long startTime = System.nanoTime();
+            Path filePath = Paths.get(path);
+            Path tempPath = Paths.get(path + ".tmp");
+            long bytesWritten;
+            try (FileOutputStream outputStream = new FileOutputStream(tempPath.toFile())) {
+                document.write(outputStream);
+
+                outputStream.getChannel().force(true);
+                bytesWritten = outputStream.getChannel().size();
+            } catch (IOException | JsonParseException e) {
+                System.err.println("Could not write " + path + ", the previous version was kept: " + e.getMessage());
+                return null;
+            }
+
+            try {
+                Files.move(tempPath, filePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.err.println("Could not replace " + path + ", the previous version was kept: " + e.getMessage());
+                return null;
+            }
+
+            writtenSnapshot = snapshotNumber;
+            WriteResult result = new WriteResult(bytesWritten, System.nanoTime() - startTime);
+            gateway.recordWrite(result);
+            return result;
+        }
+    }
+
+    private interface DocumentWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+}
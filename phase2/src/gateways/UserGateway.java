@@ -15,6 +15,17 @@ public class UserGateway extends EntityGateway<User> {
         super(User.class, path);
     }
 
+    /**
+     * Constructs an UserGateway Element that partitions the users into several json files.
+     * @param path Path of relevant json file. The shards are stored next to it, e.g. users-0.json, users-1.json, ...
+     * @param writeAhead Whether every change to a user should be written to the journal as soon as it is made,
+     *                   instead of when the users are saved.
+     * @param shardCount Number of json files the users are partitioned into.
+     */
+    public UserGateway(String path, boolean writeAhead, int shardCount) {
+        super(User.class, path, writeAhead, shardCount);
+    }
+
     @Override
     protected GsonBuilder getGsonBuilder() {
         return GatewayUtility.getInstance().getSimpleGsonBuilder();
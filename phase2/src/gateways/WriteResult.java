@@ -0,0 +1,38 @@
+package gateways;
+
+/**
+ * Statistics of a single write of a gateway's json file.
+ */
+public class WriteResult {
+    private final long bytesWritten;
+    private final long durationNanos;
+
+    /**
+     * Creates a WriteResult.
+     * @param bytesWritten Number of bytes in the written file.
+     * @param durationNanos Time taken by the write, in nanoseconds.
+     */
+    public WriteResult(long bytesWritten, long durationNanos) {
+        this.bytesWritten = bytesWritten;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * @return Number of bytes in the written file.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return Time taken by the write, in milliseconds.
+     */
+    public double getDurationMillis() {
+        return durationNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return bytesWritten + " bytes in " + String.format("%.1f", getDurationMillis()) + " ms";
+    }
+}
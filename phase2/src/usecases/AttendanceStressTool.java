@@ -0,0 +1,135 @@
+package usecases;
+
+import gateways.EventGateway;
+import gateways.TemplateGateway;
+import gateways.UserGateway;
+import utility.UserType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Command line tool that checks that concurrent sign ups never take more places than an event has, & that the number of
+ * attendees of an event always matches the users attending it.
+ * Usage: AttendanceStressTool [rounds] [threads] [users]
+ * Each round, every user tries to attend a capped event & an uncapped event twice from a pool of threads, in the same
+ * order as EventController: a place is taken first & given back if the user can't be registered. Users also leave the
+ * uncapped event, & another thread keeps suspending it & changing its privacy type, concurrently. The data is kept in a
+ * temporary directory, so no saved data is touched. Exits with status 1 if any round breaks an invariant.
+ */
+public class AttendanceStressTool {
+    private static final int CAPACITY = 100;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int rounds;
+        int threads;
+        int users;
+        try {
+            rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+            threads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+            users = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: AttendanceStressTool [rounds] [threads] [users]");
+            return;
+        }
+
+        File directory = Files.createTempDirectory("attendance").toFile();
+        directory.deleteOnExit();
+        TemplateManager templateManager = new TemplateManager(new TemplateGateway(getPath(directory, "templates")));
+        templateManager.createTemplate("Stress");
+        templateManager.addNewFieldSpecs("Stress", "Max Attendees", "int", false);
+
+        boolean passed = true;
+        for (int round = 1; round <= rounds; round++) {
+            String failure = runRound(directory, templateManager, threads, users);
+            if (failure != null) {
+                System.out.println("Round " + round + " failed: " + failure);
+                passed = false;
+            }
+        }
+        System.out.println(passed ? "All " + rounds + " rounds passed." : "Some rounds failed.");
+        if (!passed)
+            System.exit(1);
+    }
+
+    /**
+     * Runs one round against fresh managers.
+     * @return Description of the broken invariant, or null if the round passed.
+     */
+    private static String runRound(File directory, TemplateManager templateManager, int threads, int users)
+            throws InterruptedException {
+        EventManager eventManager = new EventManager(new EventGateway(getPath(directory, "events")), templateManager);
+        UserManager userManager = new UserManager(new UserGateway(getPath(directory, "users")));
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            usernames.add("user" + i);
+            userManager.createUser("user" + i, "Password1", "user" + i + "@example.com", UserType.REGULAR);
+        }
+        String cappedEvent = eventManager.createEvent("Stress", "Capped", "owner");
+        eventManager.enterFieldValue(cappedEvent, "Max Attendees", CAPACITY);
+        String uncappedEvent = eventManager.createEvent("Stress", "Uncapped", "owner");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // Only this thread changes the suspension & privacy type, whose indexes aren't thread safe.
+        executor.submit(() -> {
+            for (int i = 0; i < 1000; i++) {
+                eventManager.toggleEventSuspension(uncappedEvent);
+                eventManager.setPrivacyType(uncappedEvent, i % 2 == 0 ? "Private" : "Public");
+            }
+        });
+        for (String username: usernames) {
+            executor.submit(() -> {
+                for (int attempt = 0; attempt < 2; attempt++) {
+                    attend(eventManager, userManager, username, cappedEvent);
+                    attend(eventManager, userManager, username, uncappedEvent);
+                }
+                if (username.hashCode() % 2 == 0 && userManager.unAttendEvent(username, uncappedEvent))
+                    eventManager.unAttendEvent(uncappedEvent);
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+
+        int cappedCount = eventManager.retrieveEventById(cappedEvent).getNumAttendees();
+        if (cappedCount != Math.min(CAPACITY, users))
+            return "the capped event has " + cappedCount + " attendees";
+        String mismatch = checkAttendees(eventManager, userManager, usernames, cappedEvent);
+        if (mismatch == null)
+            mismatch = checkAttendees(eventManager, userManager, usernames, uncappedEvent);
+        if (mismatch == null && !eventManager.rebuildStatistics())
+            mismatch = "the event statistics don't match the events";
+        return mismatch;
+    }
+
+    private static void attend(EventManager eventManager, UserManager userManager, String username, String eventID) {
+        if (eventManager.attendEvent(eventID) && !userManager.attendEvent(username, eventID))
+            eventManager.unAttendEvent(eventID);
+    }
+
+    /**
+     * @return Description of the mismatch between the number of attendees of the event & the users attending it, or
+     * null if they match.
+     */
+    private static String checkAttendees(EventManager eventManager, UserManager userManager, List<String> usernames,
+                                         String eventID) {
+        int count = eventManager.retrieveEventById(eventID).getNumAttendees();
+        int listed = 0;
+        for (String username: usernames) {
+            if (userManager.getAttendingEvents(username).contains(eventID))
+                listed++;
+        }
+        int attendees = userManager.getAttendees(eventID).size();
+        if (count != listed || count != attendees)
+            return eventManager.getEventName(eventID) + " has " + count + " attendees, but " + listed +
+                    " users list it & it lists " + attendees + " users";
+        return null;
+    }
+
+    private static String getPath(File directory, String name) {
+        return directory.getPath() + File.separator + name + ".json";
+    }
+}
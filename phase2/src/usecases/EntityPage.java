@@ -0,0 +1,155 @@
+package usecases;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * One page of a list of entity ids. Every id in a list has a key, such as the position of the entity in the order the
+ * entities were created; keys increase along the list, & an id keeps its key for as long as it is in the list. A page
+ * is found from a cursor, the key of the id it starts at, so the page is found without copying or searching the list.
+ * A cursor stays valid while entities are added to or removed from the list, including the entity at the cursor
+ * itself: the page then starts at the next entity still in the list. Only the ids up to the end of the page are checked
+ * against the filter, so showing a page of a long list doesn't filter the whole list.
+ */
+public class EntityPage {
+    private final List<String> ids;
+    private final Cursor cursor;
+    private final Cursor nextCursor;
+
+    private EntityPage(List<String> ids, Cursor cursor, Cursor nextCursor) {
+        this.ids = ids;
+        this.cursor = cursor;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Finds a page of the ids that pass the filter.
+     * @param source Ids of the list, by key.
+     * @param cursor Cursor the page starts at, or null for the first page.
+     * @param pageSize Maximum number of ids on the page.
+     * @param filter Condition that the ids on the page have to pass.
+     * @param <K> Key type.
+     * @return The page.
+     */
+    @SuppressWarnings("unchecked")
+    static <K> EntityPage of(NavigableMap<K, String> source, Cursor cursor, int pageSize, Predicate<String> filter) {
+        NavigableMap<K, String> rest = cursor == null ? source : source.tailMap((K) cursor.key, true);
+        Collector page = new Collector(pageSize, filter);
+        for (Map.Entry<K, String> entry: rest.entrySet()) {
+            if (!page.add(entry.getKey(), entry.getValue()))
+                break;
+        }
+        return page.getPage();
+    }
+
+    /**
+     * Finds a page of the ids that pass the filter, in a list whose keys are the positions of the ids in it. Such a
+     * cursor only stays valid while the list doesn't change, e.g. for search results that are found once & then paged.
+     * @param source Ids of the list, in order.
+     * @param cursor Cursor the page starts at, or null for the first page.
+     * @param pageSize Maximum number of ids on the page.
+     * @param filter Condition that the ids on the page have to pass.
+     * @return The page.
+     */
+    public static EntityPage of(List<String> source, Cursor cursor, int pageSize, Predicate<String> filter) {
+        Collector page = new Collector(pageSize, filter);
+        for (int position = cursor == null ? 0 : (Integer) cursor.key; position < source.size(); position++) {
+            if (!page.add(position, source.get(position)))
+                break;
+        }
+        return page.getPage();
+    }
+
+    /**
+     * @return Ids on the page.
+     */
+    public List<String> getIds() {
+        return ids;
+    }
+
+    /**
+     * @return Cursor of this page, or null if the page is empty.
+     */
+    public Cursor getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @return Cursor of the next page, or null if this is the last page.
+     */
+    public Cursor getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return Whether there is a page after this one.
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Position in a list that a page starts at. Cursors can only be used with the list they were taken from.
+     */
+    public static class Cursor {
+        private final Object key;
+
+        private Cursor(Object key) {
+            this.key = key;
+        }
+
+        /**
+         * @return Key of the id the page starts at.
+         */
+        Object getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * Collects the ids of a page, as the ids of a list are offered to it in order from the cursor on.
+     */
+    static class Collector {
+        private final int pageSize;
+        private final Predicate<String> filter;
+        private final List<String> ids = new ArrayList<>();
+        private Cursor cursor;
+        private Cursor nextCursor;
+
+        /**
+         * Constructs a Collector.
+         * @param pageSize Maximum number of ids on the page.
+         * @param filter Condition that the ids on the page have to pass.
+         */
+        Collector(int pageSize, Predicate<String> filter) {
+            this.pageSize = pageSize;
+            this.filter = filter;
+        }
+
+        /**
+         * Offers the next id of the list to the page.
+         * @param key Key of the id.
+         * @param id The id.
+         * @return Whether the page needs more ids. Once it returns false, the page is complete.
+         */
+        boolean add(Object key, String id) {
+            if (!filter.test(id))
+                return true;
+            if (ids.size() == pageSize) {
+                nextCursor = new Cursor(key);
+                return false;
+            }
+            if (ids.isEmpty())
+                cursor = new Cursor(key);
+            ids.add(id);
+            return true;
+        }
+
+        /**
+         * @return The page of the ids collected so far.
+         */
+        EntityPage getPage() {
+            return new EntityPage(ids, cursor, nextCursor);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package usecases;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Index from a key (such as a privacy type or an owner) to the ids of the events with that key. EventManager keeps it
+ * up to date whenever the key of an event changes, so the events with a key can be listed without looking at any other
+ * event. The ids of each key are kept by the position of their event in the order the events were read or created, so
+ * they can also be paged without being copied.
+ * @param <K> Key type.
+ */
+class EventIndex<K> {
+    protected final Map<K, NavigableMap<Long, String>> eventIds;
+    private final Map<String, Long> positions;
+
+    /**
+     * Constructs an EventIndex.
+     * @param eventIds Empty map that holds the ids of each key, e.g. an EnumMap for enum keys.
+     * @param positions Position of each event in the order the events were read or created, by id. An event has to
+     *                  have a position while it is in the index.
+     */
+    EventIndex(Map<K, NavigableMap<Long, String>> eventIds, Map<String, Long> positions) {
+        this.eventIds = eventIds;
+        this.positions = positions;
+    }
+
+    /**
+     * Adds an event to the index.
+     * @param key Key of the event.
+     * @param eventId Id of the event.
+     */
+    void add(K key, String eventId) {
+        eventIds.computeIfAbsent(key, k -> new TreeMap<>()).put(positions.get(eventId), eventId);
+    }
+
+    /**
+     * Removes an event from the index.
+     * @param key Key of the event.
+     * @param eventId Id of the event.
+     */
+    void remove(K key, String eventId) {
+        NavigableMap<Long, String> ids = eventIds.get(key);
+        if (ids == null)
+            return;
+        ids.remove(positions.get(eventId));
+        if (ids.isEmpty())
+            eventIds.remove(key);
+    }
+
+    /**
+     * Moves an event whose key has changed.
+     * @param oldKey The previous key of the event.
+     * @param newKey The new key of the event.
+     * @param eventId Id of the event.
+     */
+    void move(K oldKey, K newKey, String eventId) {
+        if (Objects.equals(oldKey, newKey))
+            return;
+        remove(oldKey, eventId);
+        add(newKey, eventId);
+    }
+
+    /**
+     * @param key A key.
+     * @return Number of events with the key.
+     */
+    int count(K key) {
+        NavigableMap<Long, String> ids = eventIds.get(key);
+        return ids == null ? 0 : ids.size();
+    }
+
+    /**
+     * @param key A key.
+     * @return Ids of the events with the key, in the order the events were read or created.
+     */
+    List<String> get(K key) {
+        NavigableMap<Long, String> ids = eventIds.get(key);
+        return ids == null ? new ArrayList<>() : new ArrayList<>(ids.values());
+    }
+
+    /**
+     * @param key A key.
+     * @param cursor Cursor the page starts at, or null for the first page.
+     * @param pageSize Maximum number of events on the page.
+     * @param filter Condition that the events on the page have to pass.
+     * @return Page of the ids of the events with the key, in the order the events were read or created.
+     */
+    EntityPage getPage(K key, EntityPage.Cursor cursor, int pageSize, Predicate<String> filter) {
+        NavigableMap<Long, String> ids = eventIds.get(key);
+        return EntityPage.of(ids == null ? Collections.<Long, String>emptyNavigableMap() : ids, cursor, pageSize,
+                filter);
+    }
+}
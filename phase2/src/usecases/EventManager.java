@@ -2,10 +2,14 @@ package usecases;
 import utility.EventPrivacyType;
 import gateways.IGateway;
 import entities.Event;
+import entities.Template;
 import utility.Pair;
 
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -14,10 +18,44 @@ public class EventManager {
      * Manages the Events in the system
      */
     // === Class Variables ===
-    private final List<Event> eventList;
+    // Events by id, in the order they were read or created.
+    private final Map<String, Event> events;
+    // Position of each event in the order the events were read or created, by id, & the ids of the events by position,
+    // so lists of events can be paged from a position that stays valid while events are added & removed.
+    private final Map<String, Long> positions = new HashMap<>();
+    private final NavigableMap<Long, String> eventOrder = new TreeMap<>();
+    private long nextPosition;
+    // Secondary indexes from each privacy type, suspension state, owner & event type to the ids of its events.
+    private final EventIndex<EventPrivacyType> privacyIndex = new EventIndex<>(new EnumMap<>(EventPrivacyType.class),
+            positions);
+    private final EventIndex<Boolean> suspensionIndex = new EventIndex<>(new HashMap<>(), positions);
+    private final EventIndex<String> ownerIndex = new EventIndex<>(new HashMap<>(), positions);
+    private final EventIndex<String> typeIndex = new EventIndex<>(new HashMap<>(), positions);
+    // Index from the time of each event (see getEventTime) to the ids of the events at that time.
+    private final SortedEventIndex<LocalDateTime> timeIndex = new SortedEventIndex<>(positions);
+    // Index from the words in the name & String fields of each event to the ids of the events containing them.
+    private final EventSearchIndex searchIndex = new EventSearchIndex();
+    private final EventQueryPlanner queryPlanner;
     private final TemplateManager templateManager;
     private final IGateway<Event> gateway;
     private static final String FORMATTED_DATE= "yyyy-MM-dd HH:mm";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(FORMATTED_DATE);
+    // Names of the views of an event that are cached, & the number of views kept.
+    private static final String DETAILS_VIEW = "details";
+    private static final String METADATA_VIEW = "metadata";
+    private static final String[] CACHED_VIEWS = {DETAILS_VIEW, METADATA_VIEW};
+    private static final int VIEW_CACHE_CAPACITY = 1024;
+    // Attendance of an event is only changed while holding the lock of its stripe, so concurrent sign ups for the same
+    // event can't take more places than there are.
+    private static final int ATTENDANCE_LOCK_STRIPES = 64;
+    private final Object[] attendanceLocks = new Object[ATTENDANCE_LOCK_STRIPES];
+    // Position indexes over the waitlists of events, by event id. Only used while holding the attendance lock.
+    private final Map<String, Waitlist> waitlists = new ConcurrentHashMap<>();
+    // Rendered details & metadata of the most recently viewed events.
+    private final EventViewCache viewCache = new EventViewCache(VIEW_CACHE_CAPACITY);
+    // Counts & totals over all events. Each change to an event takes it out of the statistics before the change & puts
+    // it back in afterwards.
+    private volatile EventStatistics statistics = new EventStatistics();
 
     /**
      * Initializes an EventManager object
@@ -26,7 +64,17 @@ public class EventManager {
      */
     public EventManager(IGateway<Event> gateway, TemplateManager templateManager) {
         this.gateway = gateway;
-        eventList = gateway.getAllElements();
+        events = new LinkedHashMap<>();
+        for (int i = 0; i < attendanceLocks.length; i++)
+            attendanceLocks[i] = new Object();
+        queryPlanner = new EventQueryPlanner(events, privacyIndex, suspensionIndex, ownerIndex, typeIndex);
+        gateway.forEachElement(event -> {
+            events.put(event.getEventId(), event);
+            addToIndexes(event);
+            statistics.add(event);
+            if (!event.getWaitlist().isEmpty())
+                waitlists.put(event.getEventId(), new Waitlist(event.getWaitlist()));
+        });
         this.templateManager = templateManager;
     }
 
@@ -41,19 +89,42 @@ public class EventManager {
      */
     // Initiates the creation of an event. Requires controller to then enter all the information for the event from the user.
     public String createEvent(String templateName, String eventName, String eventOwner) {
-        Event newEvent = new Event(templateManager.retrieveTemplateByName(templateName), eventName, eventOwner);
-        newEvent.addFieldsToEventDetails(templateManager.retrieveTemplateByName(templateName));
-        newEvent.addFieldNameAndFieldSpecsInfo(templateManager.retrieveTemplateByName(templateName));
-        eventList.add(newEvent);
+        Template template = templateManager.retrieveTemplateByName(templateName);
+        Event newEvent = new Event(template, eventName, eventOwner);
+        events.put(newEvent.getEventId(), newEvent);
+        addToIndexes(newEvent);
+        statistics.add(newEvent);
+        gateway.markCreated(newEvent);
         return newEvent.getEventId();
     }
 
     /**
-     * Deletes the event with the matching eventId in eventList, a list of events
+     * Deletes the event with the matching eventId
      * @param eventId The Id of the event that is to be deleted
      */
     public void deleteEvent(String eventId) {
-        eventList.removeIf(event -> event.getEventId().equals(eventId));
+        removeEvent(eventId);
+        gateway.markDeleted(eventId);
+    }
+
+    /**
+     * Deletes the events with the matching eventIds, saving the deletions as one change
+     * @param eventIds The Ids of the events that are to be deleted
+     */
+    public void deleteEvents(Collection<String> eventIds) {
+        for (String eventId: eventIds)
+            removeEvent(eventId);
+        gateway.markDeleted(eventIds);
+    }
+
+    private void removeEvent(String eventId) {
+        Event event = events.remove(eventId);
+        if (event != null) {
+            removeFromIndexes(event);
+            statistics.remove(event);
+        }
+        waitlists.remove(eventId);
+        viewCache.remove(CACHED_VIEWS, eventId);
     }
 
     /**
@@ -62,37 +133,210 @@ public class EventManager {
      */
     public void toggleEventSuspension(String eventID) {
         Event event = retrieveEventById(eventID);
-        event.setSuspended(!event.isSuspended());
+        suspensionIndex.move(event.isSuspended(), !event.isSuspended(), eventID);
+        changeCounted(event, () -> event.setSuspended(!event.isSuspended()));
+        markUpdated(eventID);
     }
 
     /**
-     * Adds an attendee for this event if there is still room in the event
+     * Suspends every event that matches the predicate & isn't suspended yet, saving the changes as one change
+     * @param predicate The condition on the events, e.g. EventPredicate.typeIs("Concert")
+     * @return The Ids of the events that were suspended
+     */
+    public List<String> suspendEvents(EventPredicate predicate) {
+        return setSuspended(predicate, true);
+    }
+
+    /**
+     * Unsuspends every event that matches the predicate & is suspended, saving the changes as one change
+     * @param predicate The condition on the events, e.g. EventPredicate.ownerIs("bob")
+     * @return The Ids of the events that were unsuspended
+     */
+    public List<String> unsuspendEvents(EventPredicate predicate) {
+        return setSuspended(predicate, false);
+    }
+
+    private List<String> setSuspended(EventPredicate predicate, boolean suspended) {
+        // Planned like any query, so the suspension index rules out the events that already have the status.
+        List<String> eventIDs = query(new EventQuery(EventPredicate.and(EventPredicate.suspendedIs(!suspended),
+                predicate)));
+        for (String eventID: eventIDs) {
+            Event event = events.get(eventID);
+            suspensionIndex.move(!suspended, suspended, eventID);
+            changeCounted(event, () -> event.setSuspended(suspended));
+        }
+        markUpdated(eventIDs);
+        return eventIDs;
+    }
+
+    /**
+     * Adds an attendee for this event if there is still room in the event & nobody is waiting for a place, since the
+     * users on the waitlist get free places first. Checking for room & taking the place happen together, so concurrent
+     * calls never take more places than the event has.
      * @param eventID the ID of the event that is being attended
-     * @return false if there is no room in the event, true if the event has been successfully singed up for
+     * @return false if there is no room in the event or users are waiting for a place, true if the event has been
+     * successfully singed up for
      */
     public boolean attendEvent(String eventID) {
         Event currentEvent = retrieveEventById(eventID);
-        if (currentEvent.returnMaxAttendees() == -1) {
-            return true;
-        }
-        else if (currentEvent.getNumAttendees() == currentEvent.returnMaxAttendees()) {
+        if (currentEvent == null)
             return false;
+        synchronized (getAttendanceLock(eventID)) {
+            Waitlist waitlist = waitlists.get(eventID);
+            if (!hasRoom(currentEvent) || waitlist != null && !waitlist.isEmpty())
+                return false;
+            setNumAttendees(currentEvent, currentEvent.getNumAttendees() + 1);
         }
-        else {
-            int numAttendees = currentEvent.getNumAttendees();
-            currentEvent.setNumAttendees(numAttendees + 1);
-            return true;
-        }
+        markUpdated(eventID);
+        return true;
     }
 
     /**
-     * Removes an attendee from the event
+     * Removes an attendee from the event. If users are waiting for a place, the place goes to the first of them, who
+     * is then counted as an attendee.
      * @param eventID the ID of the event that is being unattended
+     * @return the username of the user who got the place, or null if nobody was waiting. That user still has to be
+     * registered for the event, or the place given back with unAttendEvent.
+     */
+    public String unAttendEvent (String eventID) {
+        Event currentEvent = retrieveEventById(eventID);
+        if (currentEvent == null)
+            return null;
+        String promotedUser = null;
+        synchronized (getAttendanceLock(eventID)) {
+            if (currentEvent.getNumAttendees() > 0)
+                setNumAttendees(currentEvent, currentEvent.getNumAttendees() - 1);
+            Waitlist waitlist = waitlists.get(eventID);
+            if (waitlist != null && hasRoom(currentEvent)) {
+                promotedUser = waitlist.poll();
+                if (promotedUser != null)
+                    setNumAttendees(currentEvent, currentEvent.getNumAttendees() + 1);
+            }
+        }
+        markUpdated(eventID);
+        return promotedUser;
+    }
+
+    /**
+     * Gives the free places of the event to the users waiting for them, in the order they joined the waitlist, e.g.
+     * after the maximum number of attendees has been raised. Each of them is counted as an attendee.
+     * @param eventID the ID of the event
+     * @return the usernames of the users who got a place, in order. They still have to be registered for the event,
+     * or their places given back with unAttendEvent.
      */
-    public void unAttendEvent (String eventID) {
+    public List<String> promoteWaitlist(String eventID) {
+        List<String> promotedUsers = new ArrayList<>();
         Event currentEvent = retrieveEventById(eventID);
-        int numAttendees = currentEvent.getNumAttendees();
-        currentEvent.setNumAttendees(numAttendees - 1);
+        if (currentEvent == null)
+            return promotedUsers;
+        synchronized (getAttendanceLock(eventID)) {
+            Waitlist waitlist = waitlists.get(eventID);
+            while (waitlist != null && !waitlist.isEmpty() && hasRoom(currentEvent)) {
+                promotedUsers.add(waitlist.poll());
+                setNumAttendees(currentEvent, currentEvent.getNumAttendees() + 1);
+            }
+        }
+        if (!promotedUsers.isEmpty())
+            markUpdated(eventID);
+        return promotedUsers;
+    }
+
+    /**
+     * Adds a user to the end of the waitlist of the event, unless they are already on it. If the event has room &
+     * nobody is waiting, the user takes a place instead, & still has to be registered for the event.
+     * @param eventID the ID of the event
+     * @param username the username of the user
+     * @return the position of the user on the waitlist starting at 1, 0 if the user took a place instead, or -1 if
+     * there is no such event
+     */
+    public int joinWaitlist(String eventID, String username) {
+        Event currentEvent = retrieveEventById(eventID);
+        if (currentEvent == null)
+            return -1;
+        int position;
+        synchronized (getAttendanceLock(eventID)) {
+            Waitlist waitlist = waitlists.computeIfAbsent(eventID, id -> new Waitlist(currentEvent.getWaitlist()));
+            if (waitlist.isEmpty() && hasRoom(currentEvent)) {
+                setNumAttendees(currentEvent, currentEvent.getNumAttendees() + 1);
+                position = 0;
+            } else {
+                position = waitlist.add(username);
+            }
+        }
+        markUpdated(eventID);
+        return position;
+    }
+
+    /**
+     * Removes a user from the waitlist of the event
+     * @param eventID the ID of the event
+     * @param username the username of the user
+     * @return whether the user was on the waitlist
+     */
+    public boolean leaveWaitlist(String eventID, String username) {
+        boolean removed;
+        synchronized (getAttendanceLock(eventID)) {
+            Waitlist waitlist = waitlists.get(eventID);
+            removed = waitlist != null && waitlist.remove(username);
+        }
+        if (removed)
+            markUpdated(eventID);
+        return removed;
+    }
+
+    /**
+     * Returns the position of a user on the waitlist of the event
+     * @param eventID the ID of the event
+     * @param username the username of the user
+     * @return the position of the user starting at 1, or 0 if the user isn't waiting for the event
+     */
+    public int getWaitlistPosition(String eventID, String username) {
+        synchronized (getAttendanceLock(eventID)) {
+            Waitlist waitlist = waitlists.get(eventID);
+            return waitlist == null ? 0 : waitlist.getPosition(username);
+        }
+    }
+
+    /**
+     * Changes the number of attendees of an event. Only called while holding the attendance lock of the event.
+     */
+    private void setNumAttendees(Event event, int numAttendees) {
+        changeCounted(event, () -> event.setNumAttendees(numAttendees));
+    }
+
+    /**
+     * Changes an event, taking it out of the statistics before the change & putting it back in afterwards. This
+     * happens while holding the attendance lock of the event, so a change can't interleave with a change to the
+     * attendance of the event, which would count one of them twice.
+     * @param event The event
+     * @param change The change to the event
+     * @return The result of the change
+     */
+    private <T> T changeCounted(Event event, Supplier<T> change) {
+        synchronized (getAttendanceLock(event.getEventId())) {
+            statistics.remove(event);
+            try {
+                return change.get();
+            } finally {
+                statistics.add(event);
+            }
+        }
+    }
+
+    private void changeCounted(Event event, Runnable change) {
+        changeCounted(event, () -> {
+            change.run();
+            return null;
+        });
+    }
+
+    private boolean hasRoom(Event event) {
+        int maxAttendees = event.returnMaxAttendees();
+        return maxAttendees == -1 || event.getNumAttendees() < maxAttendees;
+    }
+
+    private Object getAttendanceLock(String eventID) {
+        return attendanceLocks[Math.floorMod(eventID.hashCode(), attendanceLocks.length)];
     }
 
     /**
@@ -102,7 +346,73 @@ public class EventManager {
      */
     public void setPrivacyType(String eventID, String privacyTypeName) {
         EventPrivacyType privacyType = EventPrivacyType.byName(privacyTypeName);
-        retrieveEventById(eventID).setPrivacyType(privacyType);
+        Event event = retrieveEventById(eventID);
+        privacyIndex.move(event.getPrivacyType(), privacyType, eventID);
+        changeCounted(event, () -> event.setPrivacyType(privacyType));
+        markUpdated(eventID);
+    }
+
+    /**
+     * Changes the privacy type of the events with the given eventIDs, saving the changes as one change.
+     * @param eventIDs IDs of the events. IDs of events that don't exist are skipped.
+     * @param privacyTypeName The name of the new privacy type.
+     * @return The number of events whose privacy type changed.
+     */
+    public int setPrivacyType(Collection<String> eventIDs, String privacyTypeName) {
+        EventPrivacyType privacyType = EventPrivacyType.byName(privacyTypeName);
+        List<String> changedIDs = new ArrayList<>();
+        for (String eventID: eventIDs) {
+            Event event = retrieveEventById(eventID);
+            if (event == null || event.getPrivacyType() == privacyType)
+                continue;
+            privacyIndex.move(event.getPrivacyType(), privacyType, eventID);
+            changeCounted(event, () -> event.setPrivacyType(privacyType));
+            changedIDs.add(eventID);
+        }
+        markUpdated(changedIDs);
+        return changedIDs.size();
+    }
+
+    private void addToIndexes(Event event) {
+        long position = nextPosition++;
+        positions.put(event.getEventId(), position);
+        eventOrder.put(position, event.getEventId());
+        privacyIndex.add(event.getPrivacyType(), event.getEventId());
+        suspensionIndex.add(event.isSuspended(), event.getEventId());
+        ownerIndex.add(event.getEventOwner(), event.getEventId());
+        typeIndex.add(event.getEventType(), event.getEventId());
+        LocalDateTime time = getEventTime(event);
+        if (time != null)
+            timeIndex.add(time, event.getEventId());
+        searchIndex.add(event);
+    }
+
+    private void removeFromIndexes(Event event) {
+        privacyIndex.remove(event.getPrivacyType(), event.getEventId());
+        suspensionIndex.remove(event.isSuspended(), event.getEventId());
+        ownerIndex.remove(event.getEventOwner(), event.getEventId());
+        typeIndex.remove(event.getEventType(), event.getEventId());
+        LocalDateTime time = getEventTime(event);
+        if (time != null)
+            timeIndex.remove(time, event.getEventId());
+        searchIndex.remove(event.getEventId());
+        eventOrder.remove(positions.remove(event.getEventId()));
+    }
+
+    /**
+     * Returns the time of an event, which is the value of its LocalDateTime field. If the event has several such
+     * fields, the one whose name comes first alphabetically is used.
+     * @param event The event
+     * @return The time of the event, or null if it has no LocalDateTime field or the field has no value
+     */
+    private LocalDateTime getEventTime(Event event) {
+        String timeField = null;
+        for (Map.Entry<String, Pair<Class<?>, Boolean>> fieldSpecEntry : event.getFieldNameAndFieldSpecsMap().entrySet()) {
+            if (fieldSpecEntry.getValue().getFirst().equals(LocalDateTime.class) &&
+                    (timeField == null || fieldSpecEntry.getKey().compareTo(timeField) < 0))
+                timeField = fieldSpecEntry.getKey();
+        }
+        return timeField == null ? null : (LocalDateTime) event.getFieldValue(timeField);
     }
 
     // === Retrieving information ===
@@ -115,6 +425,15 @@ public class EventManager {
         return retrieveEventById(eventID).getEventOwner();
     }
 
+    /**
+     * Gets name of Event
+     * @param eventID The Id of the Event
+     * @return name of the Event
+     */
+    public String getEventName(String eventID) {
+        return retrieveEventById(eventID).getEventName();
+    }
+
     /**
      * Gets the privacy type of Event
      * @param eventID The Id of the Event
@@ -162,23 +481,27 @@ public class EventManager {
     /**
      * Returns the event details for the event with the given event id
      * @param eventId The event id of the event
-     * @return Map The event details of map for the event with the given event id
+     * @return Map The event details of map for the event with the given event id. The map is cached until the event
+     * changes, so it can't be modified.
      */
     public Map<String, String> returnEventDetails(String eventId) {
         Event event = retrieveEventById(eventId);
+        return viewCache.get(DETAILS_VIEW, eventId, event.getVersion(), () -> renderEventDetails(event));
+    }
+
+    private Map<String, String> renderEventDetails(Event event) {
         Map<String, String> eventDetailsMap = new HashMap<>();
         for (Map.Entry<String, Object> eventDetailsEntry : event.getEventDetails().entrySet()) {
             if (eventDetailsEntry.getValue() == null) {
                 eventDetailsMap.put(eventDetailsEntry.getKey(), "N/A");
             } else if (eventDetailsEntry.getValue() instanceof LocalDateTime) {
                 LocalDateTime time = (LocalDateTime) eventDetailsEntry.getValue();
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(FORMATTED_DATE);
-                eventDetailsMap.put(eventDetailsEntry.getKey(), formatter.format(time));
+                eventDetailsMap.put(eventDetailsEntry.getKey(), FORMATTER.format(time));
             } else {
                 eventDetailsMap.put(eventDetailsEntry.getKey(), eventDetailsEntry.getValue().toString());
             }
         }
-        return eventDetailsMap;
+        return Collections.unmodifiableMap(eventDetailsMap);
     }
 
     /**
@@ -186,91 +509,233 @@ public class EventManager {
      * and the value is data type that associates with each key
      * @param eventId The Id of the event
      * @return Map<String, String> The map of the event with the matching event Id, where the key is field name and
-     * the value is data type
+     * the value is data type. The map is shared by the events of the same template version & can't be modified.
      */
     public Map<String, Pair<Class<?>, Boolean>> returnFieldNameAndFieldSpecs(String eventId){
-        Map<String, Pair<Class<?>, Boolean>> fieldNameAndType = new HashMap<>();
-        for (Event event: eventList){
-            if (event.getEventId().equals(eventId)){
-                for (Map.Entry<String, Pair<Class<?>, Boolean>> fieldSpecEntry: event.getFieldNameAndFieldSpecsMap().entrySet()) {
-                    Class<?> className = fieldSpecEntry.getValue().getFirst();
-                    Boolean required = fieldSpecEntry.getValue().getSecond();
-                    Pair<Class<?>, Boolean> newPair = new Pair<>();
-                    newPair.setFirst(className);
-                    newPair.setSecond(required);
-                    fieldNameAndType.put(fieldSpecEntry.getKey(), newPair);
-                }
-
-            }
-        }
-        return fieldNameAndType;
+        Event event = retrieveEventById(eventId);
+        if (event == null)
+            return Collections.emptyMap();
+        return event.getFieldNameAndFieldSpecsMap();
     }
 
     /**
-     * Returns an event that has the matching Id from eventList, a list of events
+     * Returns the event that has the matching Id, looked up in constant time
      * @param eventId The Id of the event that is to be returned
-     * @return The event that the event Id
+     * @return The event that the event Id, or null if there is no such event
      */
     public Event retrieveEventById(String eventId) {
-        for (Event event : eventList) {
-            if (event.getEventId().equals(eventId)) {
-                return event;
-            }
-        }
-        return null;
+        return events.get(eventId);
     }
 
     /**
-     * Returns a List of the IDs of all events from eventList, a list of events
-     * @return Arraylist of all events from eventList, a list of events
+     * Returns a List of the IDs of all events
+     * @return Arraylist of all events
      */
     public List<String> getAllEvents() {
-        List<String> ret = new ArrayList<>();
-        for (Event event : eventList) {
-            ret.add(event.getEventId());
-        }
-        return ret;
+        return new ArrayList<>(events.keySet());
     }
 
     /**
-     * Returns a List of the IDs of all public events from eventList, a list of events
-     * @return Arraylist of all public events from eventList, a list of events
+     * Returns a List of the IDs of all public events
+     * @return Arraylist of all public events
      */
     public List<String> getPublicEvents() {
-        List<String> ret = new ArrayList<>();
-        for (Event event : eventList) {
-            if (event.getPrivacyType() == EventPrivacyType.PUBLIC) {
-                ret.add(event.getEventId());
-            }
-        }
-        return ret;
+        return privacyIndex.get(EventPrivacyType.PUBLIC);
     }
 
     /**
-     * Returns a List of the IDs of all friends only events from eventList, a list of events
-     * @return Arraylist of all friends only events from eventList, a list of events
+     * Returns a List of the IDs of all friends only events
+     * @return Arraylist of all friends only events
      */
     public List<String> getFriendsOnlyEvents() {
-        List<String> ret = new ArrayList<>();
-        for (Event event : eventList) {
-            if (event.getPrivacyType() == EventPrivacyType.FRIENDS_ONLY) {
-                ret.add(event.getEventId());
-            }
-        }
-        return ret;
+        return privacyIndex.get(EventPrivacyType.FRIENDS_ONLY);
     }
 
     /**
-     * Returns a List of the IDs of all suspended events from eventList, a list of events
-     * @return Arraylist of all suspended events from eventList, a list of events
+     * Returns a List of the IDs of all suspended events
+     * @return Arraylist of all suspended events
      */
     public List<String> getSuspendedEvents() {
-        List<String> ret = new ArrayList<>();
-        for (Event event : eventList) {
-            if (event.isSuspended())
-                ret.add(event.getEventId());
+        return suspensionIndex.get(true);
+    }
+
+    /**
+     * Returns a List of the IDs of all events owned by the given user
+     * @param owner username of the owner
+     * @return Arraylist of all events owned by owner
+     */
+    public List<String> getEventsByOwner(String owner) {
+        return ownerIndex.get(owner);
+    }
+
+    /**
+     * Returns a List of the IDs of all events created from the template with the given name
+     * @param eventType name of the template
+     * @return Arraylist of all events of that type
+     */
+    public List<String> getEventsByType(String eventType) {
+        return typeIndex.get(eventType);
+    }
+
+    /**
+     * Returns a List of the IDs of all events with a time in the given range, ordered by time
+     * @param from the start of the range, or null for no lower bound
+     * @param to the end of the range (not included), or null for no upper bound
+     * @return Arraylist of all events in the range
+     */
+    public List<String> getEventsBetween(LocalDateTime from, LocalDateTime to) {
+        return timeIndex.getRange(from, to, false);
+    }
+
+    /**
+     * Returns a List of the IDs of all events that haven't happened yet, soonest first
+     * @return Arraylist of all upcoming events
+     */
+    public List<String> getUpcomingEvents() {
+        return timeIndex.getRange(LocalDateTime.now(), null, false);
+    }
+
+    /**
+     * Returns a List of the IDs of all events happening in the next seven days, soonest first
+     * @return Arraylist of all events this week
+     */
+    public List<String> getEventsThisWeek() {
+        LocalDateTime now = LocalDateTime.now();
+        return timeIndex.getRange(now, now.plusWeeks(1), false);
+    }
+
+    /**
+     * Returns a List of the IDs of all events that have already happened, most recent first
+     * @return Arraylist of all past events
+     */
+    public List<String> getPastEvents() {
+        return timeIndex.getRange(null, LocalDateTime.now(), true);
+    }
+
+    /**
+     * Returns a page of the IDs of all events that pass the filter, in the order they were created
+     * @param cursor the cursor of the page, or null for the first page
+     * @param pageSize the maximum number of events on the page
+     * @param filter the condition the events on the page have to pass
+     * @return the page
+     */
+    public EntityPage getAllEventsPage(EntityPage.Cursor cursor, int pageSize, Predicate<String> filter) {
+        return EntityPage.of(eventOrder, cursor, pageSize, filter);
+    }
+
+    /**
+     * Returns a page of the given events that pass the filter, in the order they were created. The events are sorted
+     * on each call, so this is meant for short lists, like the events of one user
+     * @param eventIDs the IDs of the events, which don't have to exist
+     * @param cursor the cursor of the page, or null for the first page
+     * @param pageSize the maximum number of events on the page
+     * @param filter the condition the events on the page have to pass
+     * @return the page
+     */
+    public EntityPage getEventsPage(Collection<String> eventIDs, EntityPage.Cursor cursor, int pageSize,
+                                    Predicate<String> filter) {
+        NavigableMap<Long, String> listed = new TreeMap<>();
+        for (String eventID: eventIDs) {
+            Long position = positions.get(eventID);
+            if (position != null)
+                listed.put(position, eventID);
         }
-        return ret;
+        return EntityPage.of(listed, cursor, pageSize, filter);
+    }
+
+    /**
+     * Returns a page of the IDs of the public events that pass the filter, in the order they were created
+     * @param cursor the cursor of the page, or null for the first page
+     * @param pageSize the maximum number of events on the page
+     * @param filter the condition the events on the page have to pass
+     * @return the page
+     */
+    public EntityPage getPublicEventsPage(EntityPage.Cursor cursor, int pageSize, Predicate<String> filter) {
+        return privacyIndex.getPage(EventPrivacyType.PUBLIC, cursor, pageSize, filter);
+    }
+
+    /**
+     * Returns a page of the IDs of the friends only events that pass the filter, in the order they were created
+     * @param cursor the cursor of the page, or null for the first page
+     * @param pageSize the maximum number of events on the page
+     * @param filter the condition the events on the page have to pass
+     * @return the page
+     */
+    public EntityPage getFriendsOnlyEventsPage(EntityPage.Cursor cursor, int pageSize, Predicate<String> filter) {
+        return privacyIndex.getPage(EventPrivacyType.FRIENDS_ONLY, cursor, pageSize, filter);
+    }
+
+    /**
+     * Returns a page of the IDs of the suspended events that pass the filter, in the order they were created
+     * @param cursor the cursor of the page, or null for the first page
+     * @param pageSize the maximum number of events on the page
+     * @param filter the condition the events on the page have to pass
+     * @return the page
+     */
+    public EntityPage getSuspendedEventsPage(EntityPage.Cursor cursor, int pageSize, Predicate<String> filter) {
+        return suspensionIndex.getPage(true, cursor, pageSize, filter);
+    }
+
+    /**
+     * Returns a page of the IDs of the upcoming events that pass the filter, soonest first
+     * @param cursor the cursor of the page, or null for the first page
+     * @param pageSize the maximum number of events on the page
+     * @param filter the condition the events on the page have to pass
+     * @return the page
+     */
+    public EntityPage getUpcomingEventsPage(EntityPage.Cursor cursor, int pageSize, Predicate<String> filter) {
+        return timeIndex.getRangePage(LocalDateTime.now(), null, false, cursor, pageSize, filter);
+    }
+
+    /**
+     * Returns a page of the IDs of the events happening in the next seven days that pass the filter, soonest first
+     * @param cursor the cursor of the page, or null for the first page
+     * @param pageSize the maximum number of events on the page
+     * @param filter the condition the events on the page have to pass
+     * @return the page
+     */
+    public EntityPage getEventsThisWeekPage(EntityPage.Cursor cursor, int pageSize, Predicate<String> filter) {
+        LocalDateTime now = LocalDateTime.now();
+        return timeIndex.getRangePage(now, now.plusWeeks(1), false, cursor, pageSize, filter);
+    }
+
+    /**
+     * Returns a page of the IDs of the past events that pass the filter, most recent first
+     * @param cursor the cursor of the page, or null for the first page
+     * @param pageSize the maximum number of events on the page
+     * @param filter the condition the events on the page have to pass
+     * @return the page
+     */
+    public EntityPage getPastEventsPage(EntityPage.Cursor cursor, int pageSize, Predicate<String> filter) {
+        return timeIndex.getRangePage(null, LocalDateTime.now(), true, cursor, pageSize, filter);
+    }
+
+    /**
+     * Returns a List of the IDs of all events whose name or text fields contain every word of the query, ignoring case
+     * @param query the words to search for
+     * @return Arraylist of the matching events, best match first
+     */
+    public List<String> searchEvents(String query) {
+        return searchIndex.search(query);
+    }
+
+    /**
+     * Returns a List of the IDs of all events matching the query. The query is answered from the index that leaves
+     * the fewest events to check, if there is one.
+     * @param query the query
+     * @return Arraylist of the matching events, sorted & limited as the query asks
+     */
+    public List<String> query(EventQuery query) {
+        return queryPlanner.execute(query);
+    }
+
+    /**
+     * Returns a description of how the query would be answered, without answering it
+     * @param query the query
+     * @return the plan of the query, one step per line
+     */
+    public String explain(EventQuery query) {
+        return queryPlanner.explain(query);
     }
 
     // === Helpers for Converting to Different Types ===
@@ -278,14 +743,18 @@ public class EventManager {
     /**
      * Returns the map version of event with the given event Id
      * @param eventId The Id of the event
-     * @return Map<String, String> of event in a map
+     * @return Map<String, String> of event in a map. The map is cached until the event changes, so it can't be
+     * modified.
      */
     public Map<String, String> returnEventMetaData(String eventId) {
-        Map<String, String> eventMap = new HashMap<>();
         Event event = retrieveEventById(eventId);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(FORMATTED_DATE);
-        String formattedCreatedTime = event.getCreatedTime().format(formatter);
-        String formattedEditTime = event.getEditTime().format(formatter);
+        return viewCache.get(METADATA_VIEW, eventId, event.getVersion(), () -> renderEventMetaData(event));
+    }
+
+    private Map<String, String> renderEventMetaData(Event event) {
+        Map<String, String> eventMap = new HashMap<>();
+        String formattedCreatedTime = event.getCreatedTime().format(FORMATTER);
+        String formattedEditTime = event.getEditTime().format(FORMATTER);
         eventMap.put("Created Time", formattedCreatedTime);
         eventMap.put("Last Edited", formattedEditTime);
         eventMap.put("Event Name", event.getEventName());
@@ -294,7 +763,7 @@ public class EventManager {
         eventMap.put("Type of Event", event.getEventType());
         eventMap.put("Number of Attendees", Integer.toString(event.getNumAttendees()));
         eventMap.put("Suspended", event.isSuspended() ? "Yes" : "No");
-        return eventMap;
+        return Collections.unmodifiableMap(eventMap);
     }
 
     /**
@@ -333,15 +802,23 @@ public class EventManager {
      * @param fieldValue Value for the specified field
      */
     public void enterFieldValue(String eventId, String fieldName, Object fieldValue) {
-        for (Event event : eventList) {
-            if (event.getEventId().equals(eventId)) {
-                for (Map.Entry<String, Object> eventDetailsEntry : event.getEventDetails().entrySet()) {
-                    if (eventDetailsEntry.getKey().equals(fieldName)) {
-                            event.getEventDetails().replace(eventDetailsEntry.getKey(), fieldValue);
-                    }
-                }
-            }
+        Event event = retrieveEventById(eventId);
+        if (event == null)
+            return;
+        LocalDateTime oldTime = getEventTime(event);
+        // Set while holding the attendance lock, so no place is taken against an old value of
+        // Event.MAX_ATTENDEES_FIELD.
+        Object oldValue = changeCounted(event, () -> event.setFieldValue(fieldName, fieldValue));
+        LocalDateTime newTime = getEventTime(event);
+        if (!Objects.equals(oldTime, newTime)) {
+            if (oldTime != null)
+                timeIndex.remove(oldTime, eventId);
+            if (newTime != null)
+                timeIndex.add(newTime, eventId);
         }
+        if (fieldValue instanceof String || oldValue instanceof String)
+            searchIndex.add(event);
+        markUpdated(eventId);
     }
 
     /**
@@ -353,30 +830,28 @@ public class EventManager {
      */
     public Object convertToCorrectDataType(String eventId, String fieldName, String fieldValue) {
         Object returnFieldValue = null;
-        for (Event event : eventList) {
-            if (event.getEventId().equals(eventId)) {
-                Pair<Class<?>, Boolean> fieldSpec = event.getFieldNameAndFieldSpecsMap().get(fieldName);
-                Class<?> dataType = fieldSpec.getFirst();
-                if (dataType.equals(String.class)) {
-                    returnFieldValue = fieldValue;
-                }
-                else if (dataType.equals(Integer.class)){
-                    returnFieldValue = Integer.parseInt(fieldValue);
-                }
-                else if (dataType.equals(Boolean.class)){
-                    if (fieldValue.equalsIgnoreCase("true") || fieldValue.equalsIgnoreCase("yes") ||
-                    fieldValue.equalsIgnoreCase("y"))
-                        returnFieldValue = true;
-                    else if (fieldValue.equalsIgnoreCase("false") || fieldValue.equalsIgnoreCase("no") ||
-                    fieldValue.equalsIgnoreCase("n"))
-                        returnFieldValue = false;
-                    else
-                        throw new IllegalArgumentException();
-                }
-                else if (dataType.equals(LocalDateTime.class)){
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern(FORMATTED_DATE);
-                    returnFieldValue = LocalDateTime.parse(fieldValue, formatter);
-                }
+        Event event = retrieveEventById(eventId);
+        if (event != null) {
+            Pair<Class<?>, Boolean> fieldSpec = event.getFieldNameAndFieldSpecsMap().get(fieldName);
+            Class<?> dataType = fieldSpec.getFirst();
+            if (dataType.equals(String.class)) {
+                returnFieldValue = fieldValue;
+            }
+            else if (dataType.equals(Integer.class)){
+                returnFieldValue = Integer.parseInt(fieldValue);
+            }
+            else if (dataType.equals(Boolean.class)){
+                if (fieldValue.equalsIgnoreCase("true") || fieldValue.equalsIgnoreCase("yes") ||
+                fieldValue.equalsIgnoreCase("y"))
+                    returnFieldValue = true;
+                else if (fieldValue.equalsIgnoreCase("false") || fieldValue.equalsIgnoreCase("no") ||
+                fieldValue.equalsIgnoreCase("n"))
+                    returnFieldValue = false;
+                else
+                    throw new IllegalArgumentException();
+            }
+            else if (dataType.equals(LocalDateTime.class)){
+                returnFieldValue = LocalDateTime.parse(fieldValue, FORMATTER);
             }
         }
         return returnFieldValue;
@@ -424,10 +899,18 @@ public class EventManager {
      * @param newUsername the new username
      */
     public void updateUsername(String username, String newUsername) {
-        for (Event event: eventList) {
-            if (event.getEventOwner().equals(username)) {
-                event.setEventOwner(newUsername);
+        for (String eventId: ownerIndex.get(username)) {
+            retrieveEventById(eventId).setEventOwner(newUsername);
+            ownerIndex.move(username, newUsername, eventId);
+            markUpdated(eventId);
+        }
+        for (Map.Entry<String, Waitlist> waitlistEntry: waitlists.entrySet()) {
+            synchronized (getAttendanceLock(waitlistEntry.getKey())) {
+                if (waitlistEntry.getValue().getPosition(username) == 0)
+                    continue;
+                waitlistEntry.getValue().rename(username, newUsername);
             }
+            markUpdated(waitlistEntry.getKey());
         }
     }
 
@@ -435,6 +918,67 @@ public class EventManager {
      * Saves all events
      */
     public void saveAllEvents() {
-        gateway.saveAllElements(eventList);
+        gateway.saveChanges();
+    }
+
+    /**
+     * Returns the counts & totals over all events, e.g. the number of events of each type & how full the events are.
+     * They are kept up to date as events change, so no event is looked at.
+     * @return Snapshot of the statistics, which doesn't change afterwards
+     */
+    public EventStatistics getStatistics() {
+        return statistics.copy();
+    }
+
+    /**
+     * Computes the statistics over all events from scratch & replaces the maintained statistics with them, to check
+     * that the maintained statistics are right. Events mustn't change while the statistics are rebuilt.
+     * @return Whether the maintained statistics were the same as the ones computed from scratch
+     */
+    public boolean rebuildStatistics() {
+        EventStatistics rebuilt = new EventStatistics(events.values());
+        boolean matched = rebuilt.equals(statistics);
+        statistics = rebuilt;
+        return matched;
+    }
+
+    /**
+     * @return Number of times the details or metadata of an event were viewed & found in the view cache
+     */
+    public long getViewCacheHits() {
+        return viewCache.getHits();
+    }
+
+    /**
+     * @return Number of times the details or metadata of an event were viewed & had to be rendered
+     */
+    public long getViewCacheMisses() {
+        return viewCache.getMisses();
+    }
+
+    /**
+     * Records that an event has changed, so that its cached views are rendered again & it is saved.
+     * @param eventID The Id of the Event
+     */
+    private void markUpdated(String eventID) {
+        Event event = events.get(eventID);
+        if (event != null)
+            event.incrementVersion();
+        gateway.markUpdated(eventID);
+    }
+
+    /**
+     * Records that several events have changed, saving them as one change.
+     * @param eventIDs The Ids of the Events
+     */
+    private void markUpdated(Collection<String> eventIDs) {
+        if (eventIDs.isEmpty())
+            return;
+        for (String eventID: eventIDs) {
+            Event event = events.get(eventID);
+            if (event != null)
+                event.incrementVersion();
+        }
+        gateway.markUpdated(eventIDs);
     }
 }
\ No newline at end of file
@@ -0,0 +1,243 @@
+package usecases;
+
+import entities.Event;
+import utility.ComparisonOperator;
+import utility.EventPrivacyType;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Condition on an event, used to filter events in an EventQuery. Conditions on the owner, type, privacy type or
+ * suspension of an event can be answered from the indexes of EventManager; other conditions are checked on every event
+ * that the rest of the query doesn't rule out.
+ */
+public abstract class EventPredicate {
+    /**
+     * @param owner Username of an owner.
+     * @return Condition that holds for the events of the owner.
+     */
+    public static EventPredicate ownerIs(String owner) {
+        return new KeyPredicate<>("owner", owner, Event::getEventOwner, EventQueryPlanner::getOwnerIndex);
+    }
+
+    /**
+     * @param eventType Name of a template.
+     * @return Condition that holds for the events created from the template.
+     */
+    public static EventPredicate typeIs(String eventType) {
+        return new KeyPredicate<>("type", eventType, Event::getEventType, EventQueryPlanner::getTypeIndex);
+    }
+
+    /**
+     * @param privacyType A privacy type.
+     * @return Condition that holds for the events with the privacy type.
+     */
+    public static EventPredicate privacyIs(EventPrivacyType privacyType) {
+        return new KeyPredicate<>("privacy", privacyType, Event::getPrivacyType, EventQueryPlanner::getPrivacyIndex);
+    }
+
+    /**
+     * @param suspended A suspension status.
+     * @return Condition that holds for the events with the suspension status.
+     */
+    public static EventPredicate suspendedIs(boolean suspended) {
+        return new KeyPredicate<>("suspended", suspended, Event::isSuspended, EventQueryPlanner::getSuspensionIndex);
+    }
+
+    /**
+     * @param operator How the creation time is compared.
+     * @param time Time the creation time is compared to.
+     * @return Condition that holds for the events whose creation time compares to the time as given.
+     */
+    public static EventPredicate createdTime(ComparisonOperator operator, LocalDateTime time) {
+        return new ComparisonPredicate(EventQuery.CREATED_TIME, operator, time, Event::getCreatedTime);
+    }
+
+    /**
+     * @param fieldName Name of a template field, e.g. "Max Attendees".
+     * @param operator How the value of the field is compared.
+     * @param value Value the field is compared to, of the data type of the field.
+     * @return Condition that holds for the events whose value of the field compares to the value as given. Events
+     * without the field, or without a value for it, never match.
+     */
+    public static EventPredicate field(String fieldName, ComparisonOperator operator, Object value) {
+        return new ComparisonPredicate(fieldName, operator, value, event -> event.getFieldValue(fieldName));
+    }
+
+    /**
+     * @param predicates Conditions.
+     * @return Condition that holds if all of the conditions hold.
+     */
+    public static EventPredicate and(EventPredicate... predicates) {
+        return new CompoundPredicate(true, Arrays.asList(predicates));
+    }
+
+    /**
+     * @param predicates Conditions.
+     * @return Condition that holds if any of the conditions holds.
+     */
+    public static EventPredicate or(EventPredicate... predicates) {
+        return new CompoundPredicate(false, Arrays.asList(predicates));
+    }
+
+    /**
+     * @param event An event.
+     * @return Whether the condition holds for the event.
+     */
+    abstract boolean matches(Event event);
+
+    /**
+     * @param planner Planner that gives access to the indexes of the events.
+     * @return The cheapest way to find the events that may match, or null if every event has to be checked.
+     */
+    abstract EventQueryPlanner.Access plan(EventQueryPlanner planner);
+
+    /**
+     * Condition that an attribute of the event equals a key of one of the indexes.
+     */
+    private static class KeyPredicate<K> extends EventPredicate {
+        private final String name;
+        private final K key;
+        private final Function<Event, K> attribute;
+        private final Function<EventQueryPlanner, EventIndex<K>> index;
+
+        public KeyPredicate(String name, K key, Function<Event, K> attribute,
+                            Function<EventQueryPlanner, EventIndex<K>> index) {
+            this.name = name;
+            this.key = key;
+            this.attribute = attribute;
+            this.index = index;
+        }
+
+        @Override
+        boolean matches(Event event) {
+            return Objects.equals(attribute.apply(event), key);
+        }
+
+        @Override
+        EventQueryPlanner.Access plan(EventQueryPlanner planner) {
+            EventIndex<K> eventIndex = index.apply(planner);
+            return new EventQueryPlanner.Access("index lookup on " + this, eventIndex.count(key),
+                    () -> eventIndex.get(key));
+        }
+
+        @Override
+        public String toString() {
+            return name + " = " + key;
+        }
+    }
+
+    /**
+     * Condition that compares a value of the event to a given value. There is no index for these values.
+     */
+    private static class ComparisonPredicate extends EventPredicate {
+        private final String name;
+        private final ComparisonOperator operator;
+        private final Object value;
+        private final Function<Event, Object> attribute;
+
+        public ComparisonPredicate(String name, ComparisonOperator operator, Object value,
+                                   Function<Event, Object> attribute) {
+            this.name = name;
+            this.operator = operator;
+            this.value = value;
+            this.attribute = attribute;
+        }
+
+        @Override
+        boolean matches(Event event) {
+            Object eventValue = attribute.apply(event);
+            if (eventValue == null)
+                return false;
+            switch (operator) {
+                case EQUALS:
+                    return eventValue.equals(value);
+                case NOT_EQUALS:
+                    return !eventValue.equals(value);
+                case CONTAINS:
+                    return value != null && eventValue.toString().toLowerCase(Locale.ROOT)
+                            .contains(value.toString().toLowerCase(Locale.ROOT));
+            }
+
+            if (value == null || eventValue.getClass() != value.getClass() || !(value instanceof Comparable))
+                return false;
+            @SuppressWarnings("unchecked")
+            int comparison = ((Comparable<Object>) eventValue).compareTo(value);
+            switch (operator) {
+                case LESS_THAN:
+                    return comparison < 0;
+                case LESS_THAN_OR_EQUAL:
+                    return comparison <= 0;
+                case GREATER_THAN:
+                    return comparison > 0;
+                case GREATER_THAN_OR_EQUAL:
+                default:
+                    return comparison >= 0;
+            }
+        }
+
+        @Override
+        EventQueryPlanner.Access plan(EventQueryPlanner planner) {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + operator.getSymbol() + " " + value;
+        }
+    }
+
+    /**
+     * Conditions combined with AND or OR.
+     */
+    private static class CompoundPredicate extends EventPredicate {
+        private final boolean and;
+        private final List<EventPredicate> predicates;
+
+        public CompoundPredicate(boolean and, List<EventPredicate> predicates) {
+            this.and = and;
+            this.predicates = predicates;
+        }
+
+        @Override
+        boolean matches(Event event) {
+            for (EventPredicate predicate: predicates) {
+                if (predicate.matches(event) != and)
+                    return !and;
+            }
+            return and;
+        }
+
+        /**
+         * Events matching all conditions are among those of the most selective condition that has an index. Events
+         * matching any condition are only found without checking every event if every condition has an index.
+         */
+        @Override
+        EventQueryPlanner.Access plan(EventQueryPlanner planner) {
+            List<EventQueryPlanner.Access> accesses = new ArrayList<>();
+            for (EventPredicate predicate: predicates) {
+                EventQueryPlanner.Access access = predicate.plan(planner);
+                if (access != null)
+                    accesses.add(access);
+                else if (!and)
+                    return null;
+            }
+            if (accesses.isEmpty())
+                return null;
+
+            if (and)
+                return Collections.min(accesses, Comparator.comparingInt(EventQueryPlanner.Access::getEstimate));
+            return EventQueryPlanner.Access.union(accesses);
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(and ? " AND " : " OR ", "(", ")");
+            for (EventPredicate predicate: predicates)
+                joiner.add(predicate.toString());
+            return joiner.toString();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package usecases;
+
+/**
+ * Query for the events that match an EventPredicate, optionally sorted by a field & limited to a number of events.
+ * Run it with EventManager.query, or see how it would be run with EventManager.explain.
+ */
+public class EventQuery {
+    /**
+     * Name used to sort by the name of the event.
+     */
+    public static final String EVENT_NAME = "Event Name";
+
+    /**
+     * Name used to sort by, or compare, the time the event was created.
+     */
+    public static final String CREATED_TIME = "Created Time";
+
+    private final EventPredicate predicate;
+    private final String sortField;
+    private final boolean descending;
+    private final int limit;
+
+    /**
+     * Constructs an EventQuery for all events matching the predicate, in the order EventManager holds them.
+     * @param predicate Condition the events should match.
+     */
+    public EventQuery(EventPredicate predicate) {
+        this(predicate, null, false, -1);
+    }
+
+    /**
+     * Constructs an EventQuery.
+     * @param predicate Condition the events should match.
+     * @param sortField EVENT_NAME, CREATED_TIME or the name of a template field to sort the events by, or null to keep
+     *                  them in the order EventManager holds them. Events without a value for the field come last.
+     * @param descending Whether the events should be sorted from the highest value to the lowest.
+     * @param limit Maximum number of events, or -1 for no maximum.
+     */
+    public EventQuery(EventPredicate predicate, String sortField, boolean descending, int limit) {
+        this.predicate = predicate;
+        this.sortField = sortField;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    public EventPredicate getPredicate() {
+        return predicate;
+    }
+
+    public String getSortField() {
+        return sortField;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,181 @@
+package usecases;
+
+import entities.Event;
+import utility.EventPrivacyType;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Runs EventQueries for EventManager. Each query is planned first: the predicate picks the index lookup that leaves the
+ * fewest events to check, and only if none of its conditions has an index is every event checked. The events found
+ * this way are then filtered with the whole predicate, sorted & limited.
+ */
+class EventQueryPlanner {
+    private final Map<String, Event> events;
+    private final EventIndex<EventPrivacyType> privacyIndex;
+    private final EventIndex<Boolean> suspensionIndex;
+    private final EventIndex<String> ownerIndex;
+    private final EventIndex<String> typeIndex;
+
+    /**
+     * Constructs an EventQueryPlanner over the events & indexes of an EventManager.
+     * @param events Events by id.
+     * @param privacyIndex Index from privacy type to event ids.
+     * @param suspensionIndex Index from suspension status to event ids.
+     * @param ownerIndex Index from owner to event ids.
+     * @param typeIndex Index from event type to event ids.
+     */
+    EventQueryPlanner(Map<String, Event> events, EventIndex<EventPrivacyType> privacyIndex,
+                      EventIndex<Boolean> suspensionIndex, EventIndex<String> ownerIndex,
+                      EventIndex<String> typeIndex) {
+        this.events = events;
+        this.privacyIndex = privacyIndex;
+        this.suspensionIndex = suspensionIndex;
+        this.ownerIndex = ownerIndex;
+        this.typeIndex = typeIndex;
+    }
+
+    EventIndex<EventPrivacyType> getPrivacyIndex() {
+        return privacyIndex;
+    }
+
+    EventIndex<Boolean> getSuspensionIndex() {
+        return suspensionIndex;
+    }
+
+    EventIndex<String> getOwnerIndex() {
+        return ownerIndex;
+    }
+
+    EventIndex<String> getTypeIndex() {
+        return typeIndex;
+    }
+
+    /**
+     * @param query A query.
+     * @return Ids of the events matching the query, sorted & limited as the query asks.
+     */
+    List<String> execute(EventQuery query) {
+        EventPredicate predicate = query.getPredicate();
+        Access access = predicate.plan(this);
+        Collection<String> candidates = access == null ? events.keySet() : access.getIds();
+        // Without sorting, the first matches are the result, so checking can stop once there are enough of them.
+        int stopAfter = query.getSortField() == null && query.getLimit() >= 0 ? query.getLimit() : Integer.MAX_VALUE;
+
+        List<Event> matches = new ArrayList<>();
+        for (String id: candidates) {
+            if (matches.size() >= stopAfter)
+                break;
+            Event event = events.get(id);
+            if (event != null && predicate.matches(event))
+                matches.add(event);
+        }
+
+        if (query.getSortField() != null)
+            matches.sort(getComparator(query.getSortField(), query.isDescending()));
+        if (query.getLimit() >= 0 && matches.size() > query.getLimit())
+            matches = matches.subList(0, query.getLimit());
+
+        List<String> ids = new ArrayList<>();
+        for (Event event: matches)
+            ids.add(event.getEventId());
+        return ids;
+    }
+
+    /**
+     * @param query A query.
+     * @return Description of how the query would be run, one step per line.
+     */
+    String explain(EventQuery query) {
+        Access access = query.getPredicate().plan(this);
+        StringJoiner plan = new StringJoiner("\n");
+        if (access == null)
+            plan.add("Access: full scan of " + events.size() + " events");
+        else
+            plan.add("Access: " + access.description + " (" + access.estimate + " of " + events.size() + " events)");
+        plan.add("Filter: " + query.getPredicate());
+        if (query.getSortField() != null)
+            plan.add("Sort: " + query.getSortField() + (query.isDescending() ? ", descending" : ", ascending"));
+        if (query.getLimit() >= 0)
+            plan.add("Limit: " + query.getLimit());
+        return plan.toString();
+    }
+
+    /**
+     * @return Comparator of events by the value of a field, with events without a value last.
+     */
+    private static Comparator<Event> getComparator(String sortField, boolean descending) {
+        Comparator<Object> valueComparator = EventQueryPlanner::compareValues;
+        if (descending)
+            valueComparator = valueComparator.reversed();
+        return Comparator.comparing(event -> getSortValue(event, sortField),
+                Comparator.nullsLast(valueComparator));
+    }
+
+    private static Object getSortValue(Event event, String sortField) {
+        switch (sortField) {
+            case EventQuery.EVENT_NAME:
+                return event.getEventName();
+            case EventQuery.CREATED_TIME:
+                return event.getCreatedTime();
+            default:
+                return event.getFieldValue(sortField);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object first, Object second) {
+        if (first.getClass() == second.getClass() && first instanceof Comparable)
+            return ((Comparable<Object>) first).compareTo(second);
+        return first.toString().compareTo(second.toString());
+    }
+
+    /**
+     * A way of finding the events that may match a predicate, without checking every event.
+     */
+    static class Access {
+        private final String description;
+        private final int estimate;
+        private final Supplier<Collection<String>> ids;
+
+        /**
+         * Constructs an Access.
+         * @param description Description of the access, shown by explain.
+         * @param estimate Number of event ids the access finds, at most.
+         * @param ids Supplier of the event ids, only called if the access is chosen.
+         */
+        Access(String description, int estimate, Supplier<Collection<String>> ids) {
+            this.description = description;
+            this.estimate = estimate;
+            this.ids = ids;
+        }
+
+        /**
+         * @param accesses Accesses.
+         * @return Access that finds the event ids of every one of the accesses.
+         */
+        static Access union(List<Access> accesses) {
+            StringJoiner description = new StringJoiner("; ", "union of ", "");
+            int estimate = 0;
+            for (Access access: accesses) {
+                description.add(access.description);
+                estimate += access.estimate;
+            }
+            return new Access(description.toString(), estimate, () -> {
+                Set<String> ids = new LinkedHashSet<>();
+                for (Access access: accesses)
+                    ids.addAll(access.getIds());
+                return ids;
+            });
+        }
+
+        int getEstimate() {
+            return estimate;
+        }
+
+        Collection<String> getIds() {
+            return ids.get();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package usecases;
+
+import entities.Event;
+
+import java.util.*;
+
+/**
+ * Inverted index from the words in the name & String fields of each event to the ids of the events containing them.
+ * Words are split on anything that isn't a letter or digit & compared in lower case. EventManager keeps the index up to
+ * date whenever an event is created, edited or deleted, so a search only looks at the events containing its words.
+ */
+class EventSearchIndex {
+    // A word in the name of an event counts as much as this many occurrences in its fields.
+    private static final int NAME_WEIGHT = 3;
+
+    // Ids of the events containing each word, with the weight of the word in each event.
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    // Words of each indexed event, with their weights, so that the event can be removed again.
+    private final Map<String, Map<String, Integer>> eventWords = new HashMap<>();
+
+    /**
+     * Adds an event to the index, replacing its previous words if it was already indexed.
+     * @param event The event.
+     */
+    void add(Event event) {
+        remove(event.getEventId());
+
+        Map<String, Integer> words = new HashMap<>();
+        for (String word: tokenize(event.getEventName()))
+            words.merge(word, NAME_WEIGHT, Integer::sum);
+        for (Object value: event.getEventDetails().values()) {
+            if (value instanceof String) {
+                for (String word: tokenize((String) value))
+                    words.merge(word, 1, Integer::sum);
+            }
+        }
+
+        for (Map.Entry<String, Integer> wordEntry: words.entrySet())
+            postings.computeIfAbsent(wordEntry.getKey(), k -> new LinkedHashMap<>())
+                    .put(event.getEventId(), wordEntry.getValue());
+        eventWords.put(event.getEventId(), words);
+    }
+
+    /**
+     * Removes an event from the index.
+     * @param eventId Id of the event.
+     */
+    void remove(String eventId) {
+        Map<String, Integer> words = eventWords.remove(eventId);
+        if (words == null)
+            return;
+        for (String word: words.keySet()) {
+            Map<String, Integer> eventIds = postings.get(word);
+            eventIds.remove(eventId);
+            if (eventIds.isEmpty())
+                postings.remove(word);
+        }
+    }
+
+    /**
+     * Finds the events that contain every word of the query. Events are ranked by how often the words appear in them,
+     * with words in the name counting more than words in the fields; events with the same rank stay in the order they
+     * were indexed.
+     * @param query Words to search for.
+     * @return Ids of the matching events, best match first. Empty if the query has no words.
+     */
+    List<String> search(String query) {
+        List<Map<String, Integer>> wordPostings = new ArrayList<>();
+        for (String word: new LinkedHashSet<>(tokenize(query))) {
+            Map<String, Integer> eventIds = postings.get(word);
+            if (eventIds == null)
+                return new ArrayList<>();
+            wordPostings.add(eventIds);
+        }
+        if (wordPostings.isEmpty())
+            return new ArrayList<>();
+
+        // Only the events containing the rarest word can match, so those are the only ones looked at.
+        wordPostings.sort(Comparator.comparingInt(Map::size));
+        Map<String, Integer> scores = new LinkedHashMap<>();
+        candidates:
+        for (Map.Entry<String, Integer> candidate: wordPostings.get(0).entrySet()) {
+            int score = candidate.getValue();
+            for (int i = 1; i < wordPostings.size(); i++) {
+                Integer weight = wordPostings.get(i).get(candidate.getKey());
+                if (weight == null)
+                    continue candidates;
+                score += weight;
+            }
+            scores.put(candidate.getKey(), score);
+        }
+
+        List<String> results = new ArrayList<>(scores.keySet());
+        results.sort(Comparator.comparingInt(scores::get).reversed());
+        return results;
+    }
+
+    /**
+     * @param text Text to split into words.
+     * @return The words of the text in lower case, in the order they appear.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null)
+            return words;
+        for (String word: text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty())
+                words.add(word);
+        }
+        return words;
+    }
+}
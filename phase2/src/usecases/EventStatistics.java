@@ -0,0 +1,176 @@
+package usecases;
+
+import entities.Event;
+import utility.EventPrivacyType;
+
+import java.util.*;
+
+/**
+ * Counts & totals over all events, e.g. the number of events of each type & how full the events are, for admins.
+ * EventManager updates them whenever an event is created, deleted or changed, by taking the event out of the totals
+ * before the change & putting it back in afterwards, so reading them never looks at the events themselves. The
+ * statistics can also be computed from scratch, to check the maintained ones.
+ * The statistics EventManager maintains are thread safe; the ones it returns are snapshots that don't change.
+ */
+public class EventStatistics {
+    private int eventCount;
+    private final Map<String, Integer> typeCounts = new TreeMap<>();
+    private final Map<EventPrivacyType, Integer> privacyCounts = new EnumMap<>(EventPrivacyType.class);
+    private int suspendedCount;
+    private long totalAttendance;
+    // Totals over the events that have a maximum number of attendees, which the fill rate is computed from.
+    private int limitedEventCount;
+    private long totalPlaces;
+    private long limitedAttendance;
+
+    /**
+     * Constructs the statistics of no events.
+     */
+    EventStatistics() {
+    }
+
+    /**
+     * Constructs the statistics of the given events.
+     * @param events The events.
+     */
+    EventStatistics(Collection<Event> events) {
+        for (Event event: events)
+            add(event);
+    }
+
+    /**
+     * Counts an event in the statistics.
+     * @param event The event, as it is now.
+     */
+    synchronized void add(Event event) {
+        change(event, 1);
+    }
+
+    /**
+     * Stops counting an event in the statistics.
+     * @param event The event, as it was when it was added.
+     */
+    synchronized void remove(Event event) {
+        change(event, -1);
+    }
+
+    private void change(Event event, int sign) {
+        eventCount += sign;
+        typeCounts.merge(event.getEventType(), sign, (count, change) -> count + change == 0 ? null : count + change);
+        privacyCounts.merge(event.getPrivacyType(), sign, (count, change) -> count + change == 0 ? null :
+                count + change);
+        if (event.isSuspended())
+            suspendedCount += sign;
+        totalAttendance += sign * event.getNumAttendees();
+        int maxAttendees = event.returnMaxAttendees();
+        if (maxAttendees >= 0) {
+            limitedEventCount += sign;
+            totalPlaces += sign * maxAttendees;
+            limitedAttendance += sign * event.getNumAttendees();
+        }
+    }
+
+    /**
+     * @return Snapshot of the statistics as they are now.
+     */
+    synchronized EventStatistics copy() {
+        EventStatistics copy = new EventStatistics();
+        copy.eventCount = eventCount;
+        copy.typeCounts.putAll(typeCounts);
+        copy.privacyCounts.putAll(privacyCounts);
+        copy.suspendedCount = suspendedCount;
+        copy.totalAttendance = totalAttendance;
+        copy.limitedEventCount = limitedEventCount;
+        copy.totalPlaces = totalPlaces;
+        copy.limitedAttendance = limitedAttendance;
+        return copy;
+    }
+
+    /**
+     * @return Number of events.
+     */
+    public synchronized int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return Number of events of each event type that has any, by name of the type in alphabetical order.
+     */
+    public synchronized Map<String, Integer> getEventCountsByType() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(typeCounts));
+    }
+
+    /**
+     * @return Number of events of each privacy type, including the privacy types that have none.
+     */
+    public synchronized Map<EventPrivacyType, Integer> getEventCountsByPrivacyType() {
+        Map<EventPrivacyType, Integer> counts = new EnumMap<>(EventPrivacyType.class);
+        for (EventPrivacyType privacyType: EventPrivacyType.values())
+            counts.put(privacyType, privacyCounts.getOrDefault(privacyType, 0));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * @return Number of suspended events.
+     */
+    public synchronized int getSuspendedCount() {
+        return suspendedCount;
+    }
+
+    /**
+     * @return Number of attendees of all events together.
+     */
+    public synchronized long getTotalAttendance() {
+        return totalAttendance;
+    }
+
+    /**
+     * @return Average number of attendees of an event, or 0 if there are no events.
+     */
+    public synchronized double getAverageAttendance() {
+        return eventCount == 0 ? 0 : (double) totalAttendance / eventCount;
+    }
+
+    /**
+     * @return Number of events that have a maximum number of attendees.
+     */
+    public synchronized int getLimitedEventCount() {
+        return limitedEventCount;
+    }
+
+    /**
+     * @return Fraction of the places of the events with a maximum number of attendees that are taken, or 0 if those
+     * events have no places.
+     */
+    public synchronized double getFillRate() {
+        return totalPlaces == 0 ? 0 : (double) limitedAttendance / totalPlaces;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof EventStatistics))
+            return false;
+        // Compared as snapshots, so the locks of both are never held at once.
+        EventStatistics self = copy();
+        EventStatistics other = ((EventStatistics) o).copy();
+        return self.eventCount == other.eventCount && self.typeCounts.equals(other.typeCounts) &&
+                self.privacyCounts.equals(other.privacyCounts) && self.suspendedCount == other.suspendedCount &&
+                self.totalAttendance == other.totalAttendance && self.limitedEventCount == other.limitedEventCount &&
+                self.totalPlaces == other.totalPlaces && self.limitedAttendance == other.limitedAttendance;
+    }
+
+    @Override
+    public synchronized int hashCode() {
+        return Objects.hash(eventCount, typeCounts, privacyCounts, suspendedCount, totalAttendance, limitedEventCount,
+                totalPlaces, limitedAttendance);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EventStatistics{events=" + eventCount + ", types=" + typeCounts + ", privacyTypes=" + privacyCounts +
+                ", suspended=" + suspendedCount + ", attendance=" + totalAttendance + ", limitedEvents=" +
+                limitedEventCount + ", places=" + totalPlaces + ", limitedAttendance=" + limitedAttendance + "}";
+    }
+}
@@ -0,0 +1,103 @@
+package usecases;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the rendered views of events, e.g. the formatted details that are shown when an event is viewed, for
+ * EventManager. Each view is stored with the version of its event when it was rendered, & is only used while the event
+ * still has that version, so a change to an event is never shown late. Only the most recently used views are kept.
+ * The cache is thread safe.
+ */
+class EventViewCache {
+    private final int capacity;
+    private final Map<String, CachedView> views;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs an EventViewCache.
+     * @param capacity Maximum number of views that are kept.
+     */
+    EventViewCache(int capacity) {
+        this.capacity = capacity;
+        // In access order, so the eldest entry is the least recently used view.
+        views = new LinkedHashMap<String, CachedView>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedView> eldest) {
+                return size() > EventViewCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns a view of an event, rendering it if it isn't cached for the current version of the event.
+     * @param viewName Name of the kind of view, e.g. "details".
+     * @param eventId Id of the event.
+     * @param version Current version of the event.
+     * @param render Renders the view. Called without holding the lock of the cache.
+     * @return The view.
+     */
+    Map<String, String> get(String viewName, String eventId, long version, Supplier<Map<String, String>> render) {
+        String key = viewName + ':' + eventId;
+        synchronized (this) {
+            CachedView view = views.get(key);
+            if (view != null && view.version == version) {
+                hits++;
+                return view.view;
+            }
+            misses++;
+        }
+
+        Map<String, String> view = render.get();
+        synchronized (this) {
+            CachedView cached = views.get(key);
+            // Another thread may have rendered a later version in the meantime.
+            if (cached == null || cached.version <= version)
+                views.put(key, new CachedView(version, view));
+        }
+        return view;
+    }
+
+    /**
+     * Drops the cached views of an event, e.g. when the event is deleted.
+     * @param viewNames Names of the kinds of views.
+     * @param eventId Id of the event.
+     */
+    synchronized void remove(String[] viewNames, String eventId) {
+        for (String viewName: viewNames)
+            views.remove(viewName + ':' + eventId);
+    }
+
+    /**
+     * @return Number of views that were found in the cache.
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Number of views that had to be rendered.
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Number of views in the cache.
+     */
+    synchronized int size() {
+        return views.size();
+    }
+
+    private static class CachedView {
+        private final long version;
+        private final Map<String, String> view;
+
+        public CachedView(long version, Map<String, String> view) {
+            this.version = version;
+            this.view = view;
+        }
+    }
+}
@@ -56,8 +56,8 @@ public class MenuManager {
      * Save all menu info
      */
     public void saveAllMenuInfo() {
-        menuGateway.saveAllElements(allMenus);
-        userPermissionsGateway.saveAllElements(allPermissions);
+        menuGateway.saveChanges();
+        userPermissionsGateway.saveChanges();
     }
 
     // Helpers
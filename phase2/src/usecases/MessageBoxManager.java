@@ -60,6 +60,7 @@ public class MessageBoxManager {
         // Create the MessageBox and append it to List
         MessageBox messageBox = new MessageBox(username);
         messageBoxList.add(messageBox);
+        gateway.markCreated(messageBox);
     }
 
     /**
@@ -77,6 +78,7 @@ public class MessageBoxManager {
             String owner = messageBox.getOwner();
             if (owner.equals(recipient)) {
                 messageBox.receiveMessage(newMessage);
+                gateway.markUpdated(owner);
             }
         }
     }
@@ -91,6 +93,9 @@ public class MessageBoxManager {
             String owner = messageBox.getOwner();
             if (owner.equals(username)) {
                 messageBox.setOwner(newUsername);
+                // The owner is the message box's id, so the message box is saved under the new id
+                gateway.markDeleted(username);
+                gateway.markCreated(messageBox);
             }
         }
     }
@@ -161,6 +166,6 @@ public class MessageBoxManager {
      * Saves all message boxes.
      */
     public void saveAllMessageBoxes() {
-        gateway.saveAllElements(messageBoxList);
+        gateway.saveChanges();
     }
 }
@@ -0,0 +1,96 @@
+package usecases;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * EventIndex whose keys are kept in order, so the events with keys in a range can be listed without looking at any
+ * event outside of the range.
+ * @param <K> Key type.
+ */
+class SortedEventIndex<K extends Comparable<? super K>> extends EventIndex<K> {
+    /**
+     * Constructs a SortedEventIndex.
+     * @param positions Position of each event in the order the events were read or created, by id.
+     */
+    SortedEventIndex(Map<String, Long> positions) {
+        super(new TreeMap<>(), positions);
+    }
+
+    /**
+     * @param from Lowest key in the range, or null for no lower bound.
+     * @param to Key that the range ends before, or null for no upper bound.
+     * @param descending Whether the events should be listed from the highest key to the lowest.
+     * @return Ids of the events with keys in the range, ordered by key.
+     */
+    List<String> getRange(K from, K to, boolean descending) {
+        List<String> ids = new ArrayList<>();
+        for (NavigableMap<Long, String> keyIds: getRangeMap(from, to, descending).values())
+            ids.addAll(keyIds.values());
+        return ids;
+    }
+
+    /**
+     * @param from Lowest key in the range, or null for no lower bound.
+     * @param to Key that the range ends before, or null for no upper bound.
+     * @param descending Whether the events should be listed from the highest key to the lowest.
+     * @param cursor Cursor the page starts at, or null for the first page.
+     * @param pageSize Maximum number of events on the page.
+     * @param filter Condition that the events on the page have to pass.
+     * @return Page of the ids of the events with keys in the range, ordered by key.
+     */
+    @SuppressWarnings("unchecked")
+    EntityPage getRangePage(K from, K to, boolean descending, EntityPage.Cursor cursor, int pageSize,
+                            Predicate<String> filter) {
+        NavigableMap<K, NavigableMap<Long, String>> range = getRangeMap(from, to, descending);
+        EntityPage.Collector page = new EntityPage.Collector(pageSize, filter);
+        RangePosition<K> start = cursor == null ? null : (RangePosition<K>) cursor.getKey();
+        // The bounds of the range can move between pages (e.g. the range of upcoming events starts at the current
+        // time), so a cursor can be outside of the range: it is then before the first key or after the last one.
+        if (start != null && (from != null && start.key.compareTo(from) < 0 ||
+                to != null && start.key.compareTo(to) >= 0)) {
+            boolean beforeRange = from != null && start.key.compareTo(from) < 0;
+            if (beforeRange == descending)
+                return page.getPage();
+            start = null;
+        }
+        if (start != null)
+            range = range.tailMap(start.key, true);
+
+        for (Map.Entry<K, NavigableMap<Long, String>> keyEntry: range.entrySet()) {
+            NavigableMap<Long, String> keyIds = keyEntry.getValue();
+            if (start != null && keyEntry.getKey().compareTo(start.key) == 0)
+                keyIds = keyIds.tailMap(start.position, true);
+            for (Map.Entry<Long, String> idEntry: keyIds.entrySet()) {
+                if (!page.add(new RangePosition<>(keyEntry.getKey(), idEntry.getKey()), idEntry.getValue()))
+                    return page.getPage();
+            }
+        }
+        return page.getPage();
+    }
+
+    @SuppressWarnings("unchecked")
+    private NavigableMap<K, NavigableMap<Long, String>> getRangeMap(K from, K to, boolean descending) {
+        NavigableMap<K, NavigableMap<Long, String>> range = (NavigableMap<K, NavigableMap<Long, String>>) eventIds;
+        if (from != null)
+            range = range.tailMap(from, true);
+        if (to != null)
+            range = range.headMap(to, false);
+        if (descending)
+            range = range.descendingMap();
+        return range;
+    }
+
+    /**
+     * Key of an event in a range: the key of the event in the index & its position among the events with that key.
+     */
+    private static class RangePosition<K> {
+        private final K key;
+        private final long position;
+
+        public RangePosition(K key, long position) {
+            this.key = key;
+            this.position = position;
+        }
+    }
+}
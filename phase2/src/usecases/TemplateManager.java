@@ -34,7 +34,9 @@ public class TemplateManager {
      * @param newName new name of the template
      */
     public void editTemplateName(String templateName, String newName) {
-        this.retrieveTemplateByName(templateName).setTemplateName(newName);
+        Template template = this.retrieveTemplateByName(templateName);
+        template.setTemplateName(newName);
+        gateway.markUpdated(template.getID());
     }
 
     /**
@@ -107,7 +109,7 @@ public class TemplateManager {
      * Saves all templates
      */
     public void saveAllTemplates() {
-        gateway.saveAllElements(templateList);
+        gateway.saveChanges();
     }
 
     /**
@@ -119,6 +121,7 @@ public class TemplateManager {
         List<FieldSpecs> emptyFieldSpecs = new ArrayList<>();
         Template template = new Template(emptyFieldSpecs, templateName);
         templateList.add(template);
+        gateway.markCreated(template);
     }
 
     /**
@@ -166,6 +169,7 @@ public class TemplateManager {
         for (Template template : templateList) {
             if (template.getTemplateName().equals(templateName)) {
                 template.addFieldSpecs(fieldSpecs);
+                gateway.markUpdated(template.getID());
             }
         }
     }
@@ -176,7 +180,9 @@ public class TemplateManager {
      * @param templateName name of Template
      */
     public void deleteTemplate(String templateName) {
-        templateList.removeIf(template -> template.getTemplateName().equals(templateName));
+        Template template = retrieveTemplateByName(templateName);
+        templateList.remove(template);
+        gateway.markDeleted(template.getID());
     }
 
     /**
@@ -189,6 +195,7 @@ public class TemplateManager {
         for (Template template : templateList) {
             if (template.getTemplateName().equals(templateName)) {
                 template.getFieldDescriptions().removeIf(fieldSpecs -> fieldSpecs.getFieldName().equals(fieldName));
+                gateway.markUpdated(template.getID());
             }
         }
     }
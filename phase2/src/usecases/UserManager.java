@@ -15,6 +15,8 @@ import java.time.LocalDateTime;
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 import static utility.UserType.*;
 
@@ -23,8 +25,16 @@ import static utility.UserType.*;
  */
 public class UserManager {
     // === Instance Variables ===
-    private List<User> userList;
+    // Users by username, in the order they were read or created.
+    private Map<String, User> users;
+    // Index from each event id to the usernames of the users attending it, in the order they started attending.
+    private final Map<String, Set<String>> attendees = new ConcurrentHashMap<>();
     private List<String> usernamesList;
+    // Position of each user in the order the users were read or created, by username, & the usernames by position, so
+    // lists of users can be paged from a position that stays valid while users are added & removed.
+    private final Map<String, Long> positions = new HashMap<>();
+    private final NavigableMap<Long, String> userOrder = new TreeMap<>();
+    private long nextPosition;
     private List<String> emailList;
     private IGateway<User> gateway;
     private final RandomStringGenerator generator;
@@ -39,16 +49,18 @@ public class UserManager {
     public UserManager(IGateway<User> gateway) {
         this.generator = new RandomStringGenerator.Builder().withinRange('A', 'Z').build();
         this.gateway = gateway;
-        userList = gateway.getAllElements();
+        users = new LinkedHashMap<>();
         usernamesList = new ArrayList<>();
         emailList = new ArrayList<>();
         this.passwordGateway = new PasswordGateway("phase2/data/temp_pass");
-        for (User user :
-                userList) {
+        gateway.forEachElement(user -> {
+            users.put(user.getUsername(), user);
+            for (String eventID: user.getAttendingEvents())
+                addAttendee(eventID, user.getUsername());
             usernamesList.add(user.getUsername());
             emailList.add(user.getUserEmail());
-        }
-
+            addToOrder(user.getUsername());
+        });
     }
 
     /**
@@ -60,9 +72,11 @@ public class UserManager {
      */
     public void createUser(String username, String password, String userEmail, UserType type) {
             User newUser = new User(username, password, userEmail, type);
-            userList.add(newUser);
+            users.put(username, newUser);
+            gateway.markCreated(newUser);
             usernamesList.add(username);
             emailList.add(userEmail);
+            addToOrder(username);
             // If the user is temporary, we only give access for 30 days
             if (type == TEMPORARY){
                 newUser.setSuspensionChangeDate(LocalDateTime.now().plusDays(30));
@@ -76,15 +90,21 @@ public class UserManager {
     public void deleteUser(String username) {
         User user = retrieveUser(username);
         // Remove all the User's Events
-        List<String> ownedEvents = user.getOwnedEvents();
-        while (!ownedEvents.isEmpty()){
-            deleteEvent(username, ownedEvents.get(ownedEvents.size()-1));
-
-        }
+        deleteEvents(username, new ArrayList<>(user.getOwnedEvents()));
         // Remove all the User's info
-        userList.remove(user);
+        for (String eventID: user.getAttendingEvents())
+            removeAttendee(eventID, username);
+        users.remove(username);
+        gateway.markDeleted(username);
         usernamesList.remove(user.getUsername());
         emailList.remove(user.getUserEmail());
+        userOrder.remove(positions.remove(username));
+    }
+
+    private void addToOrder(String username) {
+        long position = nextPosition++;
+        positions.put(username, position);
+        userOrder.put(position, username);
     }
 
 
@@ -105,6 +125,7 @@ public class UserManager {
         User user = retrieveUser(username);
         user.setSuspended(true);
         setSuspensionChangeDate(user, duration);
+        gateway.markUpdated(username);
     }
 
     /**
@@ -125,13 +146,14 @@ public class UserManager {
         User user = retrieveUser(username);
         user.setSuspended(false);
         setSuspensionChangeDate(user, duration);
+        gateway.markUpdated(username);
     }
 
     /**
      * Updates the Suspension status of all users in the system
      */
     public void updateAllUserSuspension(){
-        for (User user: userList){
+        for (User user: users.values()){
             updateUserSuspension(user);
         }
     }
@@ -152,6 +174,7 @@ public class UserManager {
             boolean suspended = user.isSuspended();
             user.setSuspended(!suspended);
             setSuspensionChangeDate(user, null);
+            gateway.markUpdated(user.getUsername());
         }
     }
 
@@ -192,6 +215,7 @@ public class UserManager {
     public void updatePassword(String username, String newPassword){
         User user = retrieveUser(username);
         user.setPassword(newPassword);
+        gateway.markUpdated(username);
     }
 
     /**
@@ -201,6 +225,7 @@ public class UserManager {
      */
     public void setTempPassState(String username, boolean state) {
         retrieveUser(username).setHasTempPass(state);
+        gateway.markUpdated(username);
     }
 
     /**
@@ -212,6 +237,7 @@ public class UserManager {
         String tempPass = generator.generate(10, 20);
         user.setPassword(tempPass);
         user.setHasTempPass(true);
+        gateway.markUpdated(username);
         passwordGateway.writeTempPass(username, tempPass);
     }
 
@@ -233,15 +259,27 @@ public class UserManager {
         User user = retrieveUser(username);
         usernamesList.remove(user.getUsername()); // Remove old usernamesList
         usernamesList.add(newUsername); // Add new usernamesList
+        Long position = positions.remove(username); // Keep the user's place in the order
+        positions.put(newUsername, position);
+        userOrder.put(position, newUsername);
         user.setUsername(newUsername); // Set new username
+        users.remove(username);
+        users.put(newUsername, user);
+        for (String eventID: user.getAttendingEvents()) {
+            removeAttendee(eventID, username);
+            addAttendee(eventID, newUsername);
+        }
+        gateway.markDeleted(username); // The username is the user's id, so the user is saved under the new id
+        gateway.markCreated(user);
         updateFriendUsername(username, newUsername);
     }
 
     private void updateFriendUsername(String username, String newUsername) {
-        for (User user : userList)
+        for (User user : users.values())
             if (user.getFriends().contains(username)) {
                 user.getFriends().remove(username);
                 user.getFriends().add(newUsername);
+                gateway.markUpdated(user.getUsername());
             }
     }
 
@@ -255,6 +293,7 @@ public class UserManager {
         emailList.remove(user.getUserEmail()); // remove old email from emailList
         emailList.add(newEmail); // Add new email to emailList
         user.setUserEmail(newEmail);
+        gateway.markUpdated(username);
     }
 
     /**
@@ -268,12 +307,44 @@ public class UserManager {
         if (!user.getOwnedEvents().contains(eventID))
             return false;
         user.getOwnedEvents().remove(eventID);
-        for (User attendee : userList) {
-            unAttendEvent(attendee.getUsername(), eventID);
+        gateway.markUpdated(username);
+        for (String attendee : getAttendees(eventID)) {
+            unAttendEvent(attendee, eventID);
         }
+        attendees.remove(eventID);
         return true;
     }
 
+    /**
+     * Deletes several Events and unregisters everyone who is attending them, saving every changed User as one change
+     * @param username the username of the User who had created the events
+     * @param eventIDs the eventIDs of the events that will be deleted. Events the user doesn't own are skipped.
+     * @return the number of events that were deleted
+     */
+    public int deleteEvents(String username, Collection<String> eventIDs) {
+        User user = retrieveUser(username);
+        Set<String> deletedEvents = new HashSet<>(eventIDs);
+        deletedEvents.retainAll(user.getOwnedEvents());
+        if (deletedEvents.isEmpty())
+            return 0;
+        user.getOwnedEvents().removeIf(deletedEvents::contains);
+
+        Set<String> changedUsers = new LinkedHashSet<>();
+        changedUsers.add(username);
+        for (String eventID: deletedEvents) {
+            for (String attendee: getAttendees(eventID)) {
+                User attendingUser = retrieveUser(attendee);
+                synchronized (attendingUser) {
+                    attendingUser.getAttendingEvents().remove(eventID);
+                }
+                changedUsers.add(attendee);
+            }
+            attendees.remove(eventID);
+        }
+        gateway.markUpdated(changedUsers);
+        return deletedEvents.size();
+    }
+
     /**
      * unregister this user from an Event
      * @param username the username of the User who wishes to unregister from an Event corresponding to the given eventID
@@ -282,13 +353,15 @@ public class UserManager {
      */
     public boolean unAttendEvent(String username, String eventID) {
         User user = retrieveUser(username);
-        if (user.getAttendingEvents().contains(eventID)) {
-            user.getAttendingEvents().remove(eventID);
-            return true;
-        }
-        else {
+        if (user == null)
             return false;
+        synchronized (user) {
+            if (!user.getAttendingEvents().remove(eventID))
+                return false;
+            removeAttendee(eventID, username);
         }
+        gateway.markUpdated(username);
+        return true;
     }
 
     /**
@@ -301,6 +374,7 @@ public class UserManager {
         // Add this event to the list of events the user has created
         User user = retrieveUser(username);
         user.getOwnedEvents().add(eventID);
+        gateway.markUpdated(username);
         return true;
     }
 
@@ -309,11 +383,20 @@ public class UserManager {
      * Register the user to attend the event
      * @param username The username of the User who wishes to attend the event
      * @param eventID The event ID of the Event that the user wishes to attend
-     * @return True if the user was able to register for the event. False if the event has no available space.
+     * @return True if the user was able to register for the event. False if the user doesn't exist or is already
+     * attending the event.
      */
     public boolean attendEvent(String username, String eventID) {
         User user = retrieveUser(username);
-        user.getAttendingEvents().add(eventID);
+        if (user == null)
+            return false;
+        synchronized (user) {
+            if (user.getAttendingEvents().contains(eventID))
+                return false;
+            user.getAttendingEvents().add(eventID);
+            addAttendee(eventID, username);
+        }
+        gateway.markUpdated(username);
         return true;
     }
 
@@ -339,14 +422,75 @@ public class UserManager {
         return new ArrayList<>(user.getAttendingEvents());
     }
 
+    /**
+     * Retrieve the usernames of the users attending an event
+     * @param eventID The event ID of the event
+     * @return a list of the usernames of the users attending the event, in the order they registered
+     */
+    public List<String> getAttendees(String eventID) {
+        Set<String> eventAttendees = attendees.get(eventID);
+        if (eventAttendees == null)
+            return new ArrayList<>();
+        synchronized (eventAttendees) {
+            return new ArrayList<>(eventAttendees);
+        }
+    }
+
+    private void addAttendee(String eventID, String username) {
+        Set<String> eventAttendees = attendees.computeIfAbsent(eventID, id -> new LinkedHashSet<>());
+        synchronized (eventAttendees) {
+            eventAttendees.add(username);
+        }
+    }
+
+    private void removeAttendee(String eventID, String username) {
+        Set<String> eventAttendees = attendees.get(eventID);
+        if (eventAttendees == null)
+            return;
+        synchronized (eventAttendees) {
+            eventAttendees.remove(username);
+        }
+    }
+
     /**
      * Retrieve all usernames that are registered in UserManager
-     * @return a list of all usernames of every User in UserManager's userList
+     * @return a list of all usernames of every User in UserManager
      */
     public List<String> getUsernameList() {
         return new ArrayList<>(usernamesList);
     }
 
+    /**
+     * Retrieve a page of the usernames of the users that pass the filter, in the order they were created
+     * @param cursor the cursor of the page, or null for the first page
+     * @param pageSize the maximum number of users on the page
+     * @param filter the condition the users on the page have to pass
+     * @return the page
+     */
+    public EntityPage getUsersPage(EntityPage.Cursor cursor, int pageSize, Predicate<String> filter) {
+        return EntityPage.of(userOrder, cursor, pageSize, filter);
+    }
+
+    /**
+     * Retrieve a page of the given users that pass the filter, in the order they were created. The users are sorted on
+     * each call, so this is meant for short lists, like the friends of one user
+     * @param usernames the usernames of the users, who don't have to exist
+     * @param cursor the cursor of the page, or null for the first page
+     * @param pageSize the maximum number of users on the page
+     * @param filter the condition the users on the page have to pass
+     * @return the page
+     */
+    public EntityPage getUsersPage(Collection<String> usernames, EntityPage.Cursor cursor, int pageSize,
+                                   Predicate<String> filter) {
+        NavigableMap<Long, String> listed = new TreeMap<>();
+        for (String username: usernames) {
+            Long position = positions.get(username);
+            if (position != null)
+                listed.put(position, username);
+        }
+        return EntityPage.of(listed, cursor, pageSize, filter);
+    }
+
     /**
      * Retrieve all usernames of suspended users.
      * @return a list of all usernames of suspended users;
@@ -366,14 +510,7 @@ public class UserManager {
      * @return User If the user was found, otherwise return a null object
      * */
     public User retrieveUser(String username){
-        for (User user :
-                userList) {
-            if (user.getUsername().equals(username)){
-                return user;
-            }
-        }
-        // If the loop ends and no users with the matching username are found, return null
-        return null;
+        return username == null ? null : users.get(username);
     }
 
     /**
@@ -383,7 +520,7 @@ public class UserManager {
      * @return Returns users username corresponding to given email.
      */
     public String getUsernameByEmail(String email) {
-        for (User user : this.userList) {
+        for (User user : this.users.values()) {
             if (user.getUserEmail().equals(email)) {
                 return user.getUsername();
             }
@@ -427,6 +564,7 @@ public class UserManager {
     public boolean changeUserTypeToRegular(String username){
         User user = retrieveUser(username);
         user.setUserType(REGULAR);
+        gateway.markUpdated(username);
         return true;
     }
 
@@ -438,6 +576,7 @@ public class UserManager {
     public boolean changeUserTypeToAdmin(String username){
         User user = retrieveUser(username);
         user.setUserType(ADMIN);
+        gateway.markUpdated(username);
         return true;
     }
 
@@ -445,7 +584,7 @@ public class UserManager {
      * Save all users
      */
     public void saveAllUsers() {
-        gateway.saveAllElements(userList);
+        gateway.saveChanges();
     }
 
     /**
@@ -494,13 +633,16 @@ public class UserManager {
     private void addToFriendsList(String username, String friend) {
         User user = retrieveUser(username);
         List<String> friends = user.getFriends();
-        if (!friends.contains(friend))
+        if (!friends.contains(friend)) {
             friends.add(friend);
+            gateway.markUpdated(username);
+        }
     }
 
     private void removeFromFriendsList(String username, String friend) {
         User user = retrieveUser(username);
-        user.getFriends().remove(friend);
+        if (user.getFriends().remove(friend))
+            gateway.markUpdated(username);
     }
 
     /**
@@ -0,0 +1,109 @@
+package usecases;
+
+import java.util.*;
+
+/**
+ * Position index over the waitlist of an event. Every user on the waitlist holds a ticket, numbered in the order the
+ * users joined, so the position of a user is found from their ticket & the ticket at the head of the waitlist without
+ * walking the waitlist. Tickets stay consecutive: a user leaving from the middle of the waitlist renumbers the users
+ * behind them, which is the only operation that isn't constant time.
+ * A Waitlist isn't thread safe; EventManager only uses it while holding the attendance lock of its event.
+ */
+class Waitlist {
+    // The waitlist of the event itself, which is what gets saved.
+    private final Deque<String> usernames;
+    private final Map<String, Long> tickets = new HashMap<>();
+    private long headTicket;
+
+    /**
+     * Constructs a Waitlist.
+     * @param usernames The waitlist of an event, in order. Changes to the waitlist are made to this deque.
+     */
+    Waitlist(Deque<String> usernames) {
+        this.usernames = usernames;
+        renumber();
+    }
+
+    /**
+     * Adds a user to the end of the waitlist, unless they are already on it.
+     * @param username Username of the user.
+     * @return Position of the user, starting at 1.
+     */
+    int add(String username) {
+        if (!tickets.containsKey(username)) {
+            tickets.put(username, headTicket + usernames.size());
+            usernames.addLast(username);
+        }
+        return getPosition(username);
+    }
+
+    /**
+     * Removes a user from the waitlist.
+     * @param username Username of the user.
+     * @return Whether the user was on the waitlist.
+     */
+    boolean remove(String username) {
+        Long ticket = tickets.get(username);
+        if (ticket == null)
+            return false;
+        if (ticket == headTicket) {
+            poll();
+            return true;
+        }
+        usernames.remove(username);
+        renumber();
+        return true;
+    }
+
+    /**
+     * Removes the user at the head of the waitlist.
+     * @return Username of the user, or null if the waitlist is empty.
+     */
+    String poll() {
+        String username = usernames.pollFirst();
+        if (username != null) {
+            tickets.remove(username);
+            headTicket++;
+        }
+        return username;
+    }
+
+    /**
+     * @param username Username of a user.
+     * @return Position of the user on the waitlist, starting at 1, or 0 if the user isn't on it.
+     */
+    int getPosition(String username) {
+        Long ticket = tickets.get(username);
+        return ticket == null ? 0 : (int) (ticket - headTicket + 1);
+    }
+
+    /**
+     * @return Whether no user is waiting.
+     */
+    boolean isEmpty() {
+        return usernames.isEmpty();
+    }
+
+    /**
+     * Changes the username of a user on the waitlist, keeping their position.
+     * @param username The old username.
+     * @param newUsername The new username.
+     */
+    void rename(String username, String newUsername) {
+        if (!tickets.containsKey(username))
+            return;
+        List<String> renamed = new ArrayList<>(usernames);
+        renamed.replaceAll(name -> name.equals(username) ? newUsername : name);
+        usernames.clear();
+        usernames.addAll(renamed);
+        renumber();
+    }
+
+    private void renumber() {
+        tickets.clear();
+        headTicket = 0;
+        long ticket = 0;
+        for (String username: usernames)
+            tickets.put(username, ticket++);
+    }
+}
@@ -13,6 +13,7 @@ public enum Command {
     EXIT("Exit"),
     CREATE_EVENT("Create Event"),
     BROWSE_EVENTS("Browse Events"),
+    SEARCH_EVENTS("Search Events"),
     MESSAGING_MENU("Messaging Menu"),
     BROWSE_USERS("User List"),
     ACCOUNT_MENU("Account Menu"),
@@ -27,6 +28,8 @@ public enum Command {
     GO_BACK("Go Back"),
     ATTEND_EVENT("Attend Event"),
     UNATTEND_EVENT("Unattend Event"),
+    LEAVE_WAITLIST("Leave Waitlist"),
+    VIEW_ATTENDEES("View Attendees"),
     CHANGE_EVENT_PRIVACY("Change Privacy Status"),
     EDIT_EVENT("Edit Event"),
     DELETE_EVENT("Delete Event"),
@@ -48,7 +51,8 @@ public enum Command {
     ADD_TEMPLATE_FIELD("Add a New Field"),
     DELETE_TEMPLATE_FIELD("Delete a Field"),
     DELETE_TEMPLATE("Delete Template"),
-    CHANGE_TEMPLATE_NAME("Change Template Name");
+    CHANGE_TEMPLATE_NAME("Change Template Name"),
+    EVENT_STATISTICS("Event Statistics");
 
     private final String name;
 
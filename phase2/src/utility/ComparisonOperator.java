@@ -0,0 +1,35 @@
+package utility;
+
+/**
+ * Enum of operators that compare the value of an event field to a given value in an event query.
+ */
+public enum ComparisonOperator {
+    EQUALS ("="),
+    NOT_EQUALS ("!="),
+    LESS_THAN ("<"),
+    LESS_THAN_OR_EQUAL ("<="),
+    GREATER_THAN (">"),
+    GREATER_THAN_OR_EQUAL (">="),
+
+    /**
+     * Only applies to text: the field contains the given text, ignoring case.
+     */
+    CONTAINS ("contains");
+
+    private final String symbol;
+
+    /**
+     * Creates a ComparisonOperator.
+     * @param symbol Symbol of ComparisonOperator.
+     */
+    ComparisonOperator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * @return Symbol of ComparisonOperator.
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+}
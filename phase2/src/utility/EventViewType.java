@@ -50,7 +50,28 @@ public enum EventViewType implements ViewType<Event> {
      * Shows suspended events. (ViewType intended for admins).
      * Shows events regardless of access.
      */
-    SUSPENDED ("Suspended Events");
+    SUSPENDED ("Suspended Events"),
+
+    /**
+     * Shows events that haven't happened yet, soonest first.
+     * Doesn't show events that user has no access to.
+     * Doesn't show suspended events.
+     */
+    UPCOMING ("Upcoming Events"),
+
+    /**
+     * Shows events happening in the next seven days, soonest first.
+     * Doesn't show events that user has no access to.
+     * Doesn't show suspended events.
+     */
+    THIS_WEEK ("Events This Week"),
+
+    /**
+     * Shows events that have already happened, most recent first.
+     * Doesn't show events that user has no access to.
+     * Doesn't show suspended events.
+     */
+    PAST ("Past Events");
 
     private final String name;
 